@@ -0,0 +1,127 @@
+package clanrankupnotifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model side of {@code ClanRankUpNotifierPanel.setRows}: patching the table model and
+ * the sort index, and switching the sort column. Runs headless, the Swing components
+ * themselves are not created. Only the benchmarks that patch a populated model get a fresh
+ * one per invocation; the others share their state for the whole trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PanelModelBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Lists
+    {
+        @Param({"50", "500", "5000"})
+        public int rows;
+
+        List<DueEntry> lines;
+        List<DueEntry> shifted;
+        // sorted once, for switching between orders that are already up to date
+        DueSortIndex sorted;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            lines = new ArrayList<>(rows);
+            shifted = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++)
+            {
+                lines.add(entry(i, rows - i));
+                // every tenth member promoted away, the rest one day older
+                if (i % 10 != 0) shifted.add(entry(i, rows - i + 1));
+            }
+            sorted = new DueSortIndex();
+            sorted.update(lines);
+        }
+    }
+
+    /**
+     * A model and sort index holding {@link Lists#lines}, rebuilt before every invocation
+     * because the benchmarks using it move them on to another list.
+     */
+    @State(Scope.Thread)
+    public static class Populated
+    {
+        DueTableModel model;
+        DueSortIndex sortIndex;
+
+        @Setup(Level.Invocation)
+        public void populate(Lists lists)
+        {
+            model = new DueTableModel();
+            model.update(lists.lines);
+            sortIndex = new DueSortIndex();
+            sortIndex.update(lists.lines);
+        }
+    }
+
+    @Benchmark
+    public DueTableModel buildFromEmpty(Lists lists)
+    {
+        DueTableModel model = new DueTableModel();
+        model.update(lists.lines);
+        return model;
+    }
+
+    @Benchmark
+    public DueTableModel refreshUnchanged(Lists lists, Populated populated)
+    {
+        populated.model.update(lists.lines);
+        return populated.model;
+    }
+
+    @Benchmark
+    public DueTableModel refreshShifted(Lists lists, Populated populated)
+    {
+        populated.model.update(lists.shifted);
+        return populated.model;
+    }
+
+    /**
+     * Keeping every sort order up to date with a day's changes.
+     */
+    @Benchmark
+    public DueSortIndex sortIndexShifted(Lists lists, Populated populated)
+    {
+        populated.sortIndex.update(lists.shifted);
+        return populated.sortIndex;
+    }
+
+    /**
+     * Switching back and forth between sort columns once the orders are up to date.
+     */
+    @Benchmark
+    public int[] switchSortColumn(Lists lists)
+    {
+        lists.sorted.positions(DueSortIndex.Order.NAME);
+        return lists.sorted.positions(DueSortIndex.Order.TARGET);
+    }
+
+    private static DueEntry entry(int member, int days)
+    {
+        final String name = "Member " + member;
+        return new DueEntry(MemberKey.of(name), name, days, member % 3, "Rank" + member % 3, 3, "Rank3");
+    }
+}
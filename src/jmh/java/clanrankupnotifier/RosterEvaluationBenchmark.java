@@ -0,0 +1,188 @@
+package clanrankupnotifier;
+
+import net.runelite.api.clan.ClanMember;
+import net.runelite.api.clan.ClanRank;
+import net.runelite.api.clan.ClanSettings;
+import net.runelite.api.clan.ClanTitle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Roster scan cost at different clan and rule-set sizes. {@link #baseline} is the
+ * original {@code checkRosterAndNotify} loop and serves as the reference point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RosterEvaluationBenchmark
+{
+    @Param({"50", "500", "50000"})
+    public int members;
+
+    @Param({"3", "20", "120"})
+    public int rules;
+
+    private ClanSettings clan;
+    private String rulesText;
+    private String eligibleText;
+
+    private String[] titles;
+    private RosterSnapshot snapshot;
+    private RuleTable ruleTable;
+    private RankTitleCache rankTitleCache;
+    private Set<MemberKey> ignored;
+    private NameTable names;
+    private RosterSnapshot previous;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        List<ClanMember> roster = RosterFixtures.members(members, rules, 42);
+        clan = RosterFixtures.clan(roster);
+        rulesText = RosterFixtures.rules(rules);
+        eligibleText = RosterFixtures.eligibleRanks(rules);
+
+        titles = RosterSnapshot.captureRankTitles(clan);
+        names = new NameTable();
+        snapshot = RosterSnapshot.capture(clan, titles, names);
+        rankTitleCache = RankTitleCache.build(titles, lowerSet(eligibleText));
+        ruleTable = RuleTable.compile(rulesText, rankTitleCache);
+        ignored = new HashSet<>();
+        for (int i = 0; i < members; i += 50) ignored.add(MemberKey.of("member " + i));
+        // the previous scan's capture of the same roster
+        previous = RosterSnapshot.capture(clan, titles, names);
+    }
+
+    /**
+     * The scan as it was before any of the optimisations, with notifications muted.
+     */
+    @Benchmark
+    public List<String> baseline()
+    {
+        TreeMap<Integer, String> rules = new TreeMap<>();
+        for (String line : rulesText.split("\\R"))
+        {
+            String s = line.trim();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            String[] parts = s.split("=");
+            if (parts.length != 2) continue;
+            try {
+                rules.put(Integer.parseInt(parts[0].trim()), parts[1].trim());
+            } catch (NumberFormatException ignored) { }
+        }
+        Set<String> eligibleRanksSet = lowerSet(eligibleText);
+        Set<String> ignoredUsersSet = new HashSet<>();
+        for (MemberKey key : ignored) ignoredUsersSet.add(key.getKey());
+
+        LocalDate today = RosterFixtures.TODAY;
+        List<String> due = new ArrayList<>();
+        for (ClanMember member : clan.getMembers())
+        {
+            final String name = member.getName();
+            if (name == null || name.isBlank()) continue;
+
+            final LocalDate joined = member.getJoinDate();
+            if (joined == null) continue;
+
+            final long days = ChronoUnit.DAYS.between(joined, today);
+            final Map.Entry<Integer, String> rule = rules.floorEntry((int) days);
+            if (rule == null) continue;
+
+            final String targetRankName = rule.getValue();
+            final ClanRank currentRank = member.getRank();
+            final ClanTitle currentClanRankTitle = clan.titleForRank(currentRank);
+            final boolean noRank = currentClanRankTitle == null;
+            final String currentRankName = noRank ? "Not ranked" : clan.titleForRank(currentRank).getName();
+
+            final boolean eligibleRank = eligibleRanksSet.contains(currentRankName.toLowerCase());
+            final boolean correctRank = targetRankName.trim().equalsIgnoreCase(currentRankName.trim());
+            final boolean inIgnoreList = ignoredUsersSet.contains(name.toLowerCase());
+
+            if (!eligibleRank || correctRank || noRank || inIgnoreList) continue;
+
+            due.add(String.format("%s,%d,%s,%s", name, days, targetRankName, currentRankName));
+        }
+
+        due.sort((a, b) -> {
+            int da = Integer.parseInt(a.split(",")[1].trim());
+            int db = Integer.parseInt(b.split(",")[1].trim());
+            return Integer.compare(db, da);
+        });
+        return due;
+    }
+
+    /**
+     * Client-thread part of a scan: copying the roster out of the clan settings.
+     */
+    @Benchmark
+    public RosterSnapshot captureSnapshot()
+    {
+        return RosterSnapshot.capture(clan, titles, names);
+    }
+
+    /**
+     * Background part of a full scan with already compiled rules.
+     */
+    @Benchmark
+    public List<DueEntry> evaluateFull()
+    {
+        final long today = RosterFixtures.TODAY.toEpochDay();
+        final List<DueEntry> due = new ArrayList<>();
+        for (RosterSnapshot.Member member : snapshot.getMembers())
+        {
+            DueEntry entry = RankEvaluator.evaluate(member, ruleTable, rankTitleCache, ignored, today);
+            if (entry != null) due.add(entry);
+        }
+        due.sort((a, b) -> Integer.compare(b.getDays(), a.getDays()));
+        return due;
+    }
+
+    /**
+     * Background part of a scan where nothing changed since the previous one.
+     */
+    @Benchmark
+    public RosterDiff diffUnchanged()
+    {
+        return RosterDiff.between(previous, snapshot);
+    }
+
+    /**
+     * Cost paid once per config or rank-title change.
+     */
+    @Benchmark
+    public RuleTable compileRules()
+    {
+        return RuleTable.compile(rulesText, RankTitleCache.build(titles, lowerSet(eligibleText)));
+    }
+
+    private static Set<String> lowerSet(String csv)
+    {
+        Set<String> out = new HashSet<>(Arrays.asList(csv.toLowerCase().split(",")));
+        out.remove("");
+        return out;
+    }
+}
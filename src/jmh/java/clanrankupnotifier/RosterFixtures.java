@@ -0,0 +1,129 @@
+package clanrankupnotifier;
+
+import net.runelite.api.clan.ClanMember;
+import net.runelite.api.clan.ClanRank;
+import net.runelite.api.clan.ClanSettings;
+import net.runelite.api.clan.ClanTitle;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic clan data for the benchmarks, so they run without a game client.
+ */
+final class RosterFixtures
+{
+    static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    private RosterFixtures() { }
+
+    /**
+     * Rank titles "Rank0".."Rank127" for ranks 0..127 plus "Guest" for -1.
+     */
+    static String[] titles()
+    {
+        String[] titles = new String[RankTitleCache.RANK_COUNT];
+        titles[0] = "Guest";
+        for (int r = 0; r <= RankTitleCache.MAX_RANK; r++) titles[r - RankTitleCache.MIN_RANK] = "Rank" + r;
+        return titles;
+    }
+
+    /**
+     * {@code count} rules spread over two years, each promoting to the next rank.
+     */
+    static String rules(int count)
+    {
+        StringBuilder sb = new StringBuilder("# Days = RankName or RankNumber\n");
+        for (int i = 0; i < count; i++)
+        {
+            sb.append(1 + i * 730 / count).append('=').append("Rank").append(Math.min(i + 1, RankTitleCache.MAX_RANK)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Eligible ranks config covering every rank a rule can promote from.
+     */
+    static String eligibleRanks(int ruleCount)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r <= Math.min(ruleCount, RankTitleCache.MAX_RANK); r++)
+        {
+            if (sb.length() > 0) sb.append(',');
+            sb.append("Rank").append(r);
+        }
+        return sb.toString();
+    }
+
+    static List<ClanMember> members(int count, int ruleCount, long seed)
+    {
+        Random random = new Random(seed);
+        List<ClanMember> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int rank = random.nextInt(Math.min(ruleCount, RankTitleCache.MAX_RANK) + 1);
+            LocalDate joined = TODAY.minusDays(random.nextInt(800));
+            out.add(new Member("Member " + i, new ClanRank(rank), joined));
+        }
+        return out;
+    }
+
+    static ClanSettings clan(List<ClanMember> members)
+    {
+        final String[] titles = titles();
+        final ClanTitle[] clanTitles = new ClanTitle[titles.length];
+        for (int i = 0; i < titles.length; i++) clanTitles[i] = new ClanTitle(i + RankTitleCache.MIN_RANK, titles[i]);
+        final List<ClanMember> view = Collections.unmodifiableList(members);
+
+        return (ClanSettings) Proxy.newProxyInstance(
+                ClanSettings.class.getClassLoader(),
+                new Class<?>[]{ClanSettings.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "getMembers":
+                            return view;
+                        case "titleForRank":
+                        {
+                            int rank = ((ClanRank) args[0]).getRank();
+                            int idx = rank - RankTitleCache.MIN_RANK;
+                            return idx >= 0 && idx < clanTitles.length ? clanTitles[idx] : null;
+                        }
+                        case "getName":
+                            return "Benchmark Clan";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "ClanSettings[benchmark]";
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    static final class Member implements ClanMember
+    {
+        private final String name;
+        private final ClanRank rank;
+        private final LocalDate joinDate;
+
+        Member(String name, ClanRank rank, LocalDate joinDate)
+        {
+            this.name = name;
+            this.rank = rank;
+            this.joinDate = joinDate;
+        }
+
+        @Override public String getName() { return name; }
+
+        @Override public ClanRank getRank() { return rank; }
+
+        @Override public LocalDate getJoinDate() { return joinDate; }
+    }
+}
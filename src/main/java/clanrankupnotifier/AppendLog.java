@@ -0,0 +1,132 @@
+package clanrankupnotifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Line log behind the {@link NotificationStore} and the {@link IgnoreStore}. The owner
+ * replays it once on first use, adds a line per change and flushes them in one append.
+ * Once the log holds more than twice as many lines as the owner has live entries, the
+ * flush rewrites it with one line per entry instead, through a temporary file moved over
+ * the log, so a crash leaves either the old or the new log.
+ * <p>
+ * A last line without its line break was cut short by a crash; it is skipped, and the next
+ * flush rewrites the log so nothing gets appended to it. Without a file nothing is written.
+ * <p>
+ * Not thread-safe; used from the same thread as its owner.
+ */
+final class AppendLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AppendLog.class);
+
+    static final int MIN_COMPACT_LINES = 128;
+
+    private final Path file;
+    private final List<String> pending = new ArrayList<>();
+    private int lines;
+    private boolean torn;
+
+    /**
+     * @param file the log file, or null to keep nothing
+     */
+    AppendLog(Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Hands every complete line of the log to the reader, oldest first.
+     */
+    void read(Consumer<String> reader)
+    {
+        if (file == null) return;
+
+        final String text;
+        try {
+            text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to read {}", file, e);
+            return;
+        }
+
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; start = end + 1, end = text.indexOf('\n', start))
+        {
+            lines++;
+            final int stop = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (stop > start) reader.accept(text.substring(start, stop));
+        }
+        if (start < text.length())
+        {
+            LOG.debug("[ClanRankNotifier] skipped an incomplete last line in {}", file);
+            torn = true;
+        }
+    }
+
+    void add(String line)
+    {
+        if (file != null) pending.add(line);
+    }
+
+    /**
+     * Appends the lines added since the last flush, or rewrites the log if it grew too large.
+     * Lines that could not be written are kept for the next flush.
+     *
+     * @param live     the number of entries the owner holds
+     * @param snapshot one line per live entry, only asked for when the log is rewritten
+     */
+    void flush(int live, Supplier<? extends Iterable<String>> snapshot)
+    {
+        if (file == null || pending.isEmpty()) return;
+
+        try {
+            Files.createDirectories(file.getParent());
+            if (torn || lines + pending.size() > Math.max(MIN_COMPACT_LINES, live * 2))
+            {
+                compact(snapshot.get());
+            }
+            else
+            {
+                Files.write(file, pending, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                lines += pending.size();
+            }
+            pending.clear();
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to write {}", file, e);
+        }
+    }
+
+    private void compact(Iterable<String> snapshot) throws IOException
+    {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            for (String line : snapshot)
+            {
+                w.write(line);
+                w.newLine();
+                written++;
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lines = written;
+        torn = false;
+        LOG.debug("[ClanRankNotifier] compacted {} to {} entries", file, written);
+    }
+}
@@ -3,10 +3,29 @@ package clanrankupnotifier;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.ConfigSection;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
 @ConfigGroup("clanrankupnotifier")
 public interface ClanRankUpNotifierConfig extends Config
 {
+    @ConfigSection(
+            name = "Group Ironman clan",
+            description = "Separate rules for your group ironman clan. Leave the rules empty to skip it.",
+            position = 100,
+            closedByDefault = true
+    )
+    String groupIronmanSection = "groupIronman";
+
+    @ConfigSection(
+            name = "Developer",
+            description = "Tools for investigating problems.",
+            position = 200,
+            closedByDefault = true
+    )
+    String developerSection = "developer";
+
     // ClanRankNotifierConfig.java
     @ConfigItem(
             keyName = "eligibleRanks",
@@ -57,4 +76,56 @@ public interface ClanRankUpNotifierConfig extends Config
             description = "Check if you'd like to mute notifications about due rank-ups. Set to true by default."
     )
     default boolean muteNotifications() { return true; }
+
+    @ConfigItem(
+            keyName = "notificationWindow",
+            name = "Notification window",
+            description = "Members that become due within this many seconds of each other are sent as one notification."
+    )
+    @Units(Units.SECONDS)
+    @Range(max = 300)
+    default int notificationWindow() { return 5; }
+
+    @ConfigItem(
+            keyName = "notificationInterval",
+            name = "Min. time between notifications",
+            description = "At most one notification is sent per this many seconds. Members that become due " +
+                    "in between are collected into the next one."
+    )
+    @Units(Units.SECONDS)
+    @Range(max = 3600)
+    default int notificationInterval() { return 60; }
+
+    @ConfigItem(
+            keyName = "gimEligibleRanks",
+            name = "Eligible current ranks",
+            description = "Like 'Eligible current ranks', for the group ironman clan.",
+            section = groupIronmanSection
+    )
+    default String gimEligibleRanks() { return ""; }
+
+    @ConfigItem(
+            keyName = "gimRules",
+            name = "Rank rules",
+            description = "Like 'Rank rules', for the group ironman clan. Empty = the group ironman clan is not checked.",
+            section = groupIronmanSection
+    )
+    default String gimRules() { return ""; }
+
+    @ConfigItem(
+            keyName = "gimIgnorelist",
+            name = "Ignored users",
+            description = "Like 'Ignored users', for the group ironman clan.",
+            section = groupIronmanSection
+    )
+    default String gimIgnoredUsers() { return ""; }
+
+    @ConfigItem(
+            keyName = "recordScans",
+            name = "Record scans",
+            description = "Records the rosters, settings and scan requests the plugin sees to a file in " +
+                    ".runelite/clan-rank-up-notifier/recordings, for replaying them outside the game.",
+            section = developerSection
+    )
+    default boolean recordScans() { return false; }
 }
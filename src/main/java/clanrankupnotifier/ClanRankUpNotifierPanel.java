@@ -7,31 +7,122 @@ import net.runelite.client.ui.PluginPanel;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableColumn;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
-
-public class ClanRankUpNotifierPanel extends PluginPanel
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Sidebar panel. Results are kept as one {@link SectionState} per clan and only turned
+ * into Swing updates while the panel is shown; the components themselves are built the
+ * first time it is opened.
+ */
+public class ClanRankUpNotifierPanel extends PluginPanel implements ScanPipeline.View
 {
     private static final int NAME_COLUMN_WIDTH = 65;
     private static final int DAYS_COLUMN_WIDTH = 40;
     private static final int CURRENT_RANK_COLUMN_WIDTH = 50;
     private static final int NEXT_RANK_COLUMN_WIDTH = 50;
+    private static final int ROW_HEIGHT = 22;
 
-    private final JPanel content = new JPanel();
-    private final JLabel infoLabel = new JLabel();
-    private final JButton runButton = new JButton("Update");
-    private final Consumer<String> onIgnoreUser;
+    private static final Color NAME_COLOR = Color.WHITE;
+    private static final Color DAYS_COLOR = new Color(100, 225, 255);
+    private static final Color CURRENT_RANK_COLOR = new Color(255, 230, 110);
+    private static final Color NEXT_RANK_COLOR = new Color(140, 255, 160);
+    private static final String ANY_RANK = "Any rank";
+    private static final int[] IGNORE_DAYS = {7, 14, 30};
 
-    public ClanRankUpNotifierPanel(Runnable onRunCheck, Consumer<String> onIgnoreUser)
+    private final JPanel sectionList = new JPanel();
+    private final JButton runButton = new JButton("Update");
+    private final JButton exportButton = new JButton("Export");
+    private final Map<ClanScope, Section> sections = new EnumMap<>(ClanScope.class);
+    private final Map<ClanScope, AtomicReference<SectionState>> states = new EnumMap<>(ClanScope.class);
+    private final AtomicBoolean renderQueued = new AtomicBoolean();
+    private final Runnable onRunCheck;
+    private final IgnoreActions ignoreActions;
+    private final BiConsumer<ClanScope, String> onShowHistory;
+    private final BiConsumer<RosterExporter.Format, File> onExport;
+    private final ScanMetrics metrics;
+    private final DaysQuery forecast;
+    private final DaysQuery changes;
+    private final JButton diagnosticsToggle = new JButton();
+    private final JPanel diagnostics = new JPanel(new BorderLayout(0, 4));
+    private final JTextArea diagnosticsText = new JTextArea();
+    private final JTextField searchField = new JTextField();
+    private final JComboBox<String> currentFilter = new JComboBox<>();
+    private final JComboBox<String> targetFilter = new JComboBox<>();
+    private boolean updatingFilters;
+    private DueSortIndex.Order sortOrder = DueSortIndex.Order.DAYS;
+    private boolean built;
+    private volatile boolean active;
+
+    /**
+     * @param onExport   called with the chosen format and file, or a null file for the clipboard
+     * @param onForecast called with a number of days ahead to look for members becoming due
+     * @param onChanges  called with a number of days back to look for roster changes
+     */
+    public ClanRankUpNotifierPanel(ScanMetrics metrics, Runnable onRunCheck, IgnoreActions ignoreActions,
+                                   BiConsumer<ClanScope, String> onShowHistory,
+                                   BiConsumer<RosterExporter.Format, File> onExport, IntConsumer onForecast,
+                                   IntConsumer onChanges)
     {
-        this.onIgnoreUser = onIgnoreUser;
+        this.metrics = metrics;
+        this.forecast = new DaysQuery("Upcoming promotions", "Due within days:", "Nobody becomes due in this period.", onForecast);
+        this.changes = new DaysQuery("Recent changes", "Changed within days:", "No roster changes recorded in this period.", onChanges);
+        this.ignoreActions = ignoreActions;
+        this.onShowHistory = onShowHistory;
+        this.onExport = onExport;
+        this.onRunCheck = onRunCheck;
 
         setLayout(new BorderLayout(0, 4));
         setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
 
+        // the main clan is always shown, the others once they have rules and members
+        for (ClanScope scope : ClanScope.values())
+        {
+            states.put(scope, new AtomicReference<>(new SectionState(scope == ClanScope.CLAN, "", List.of())));
+        }
+    }
+
+    @Override
+    public void onActivate()
+    {
+        active = true;
+        if (!built) build();
+        render();
+        refreshForecast();
+        refreshChanges();
+    }
+
+    @Override
+    public void onDeactivate()
+    {
+        active = false;
+    }
+
+    private void build()
+    {
+        built = true;
+
         JPanel top = new JPanel(new BorderLayout());
         top.setOpaque(false);
 
@@ -41,81 +132,420 @@ public class ClanRankUpNotifierPanel extends PluginPanel
 
         runButton.setFocusable(false);
         runButton.setMargin(new Insets(2, 8, 2, 8));
+        // the plugin disables the button for as long as a check is in progress
         runButton.addActionListener(e -> {
-            setBusy(true);
-            try {
-                if (onRunCheck != null) onRunCheck.run();
-            }
-            finally { setBusy(false); }
+            if (onRunCheck != null) onRunCheck.run();
+        });
+
+        exportButton.setFocusable(false);
+        exportButton.setMargin(new Insets(2, 8, 2, 8));
+        exportButton.addActionListener(e -> {
+            JPopupMenu menu = buildExportMenu();
+            menu.show(exportButton, 0, exportButton.getHeight());
         });
 
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.setOpaque(false);
+        buttons.add(exportButton);
+        buttons.add(runButton);
+
         top.add(headerLabel, BorderLayout.WEST);
-        top.add(runButton, BorderLayout.EAST);
+        top.add(buttons, BorderLayout.EAST);
+        top.add(buildSearch(), BorderLayout.SOUTH);
         add(top, BorderLayout.NORTH);
 
-        infoLabel.setForeground(Color.LIGHT_GRAY);
-        infoLabel.setFont(infoLabel.getFont().deriveFont(Font.PLAIN, 12f));
-        infoLabel.setBorder(new EmptyBorder(2, 2, 2, 2));
-        add(infoLabel, BorderLayout.CENTER);
+        // the tables are not wrapped in their own scroll panes, the plugin panel already scrolls.
+        // JTable still only paints the rows inside the visible clip.
+        sectionList.setLayout(new BoxLayout(sectionList, BoxLayout.Y_AXIS));
+        sectionList.setOpaque(false);
+        for (ClanScope scope : ClanScope.values())
+        {
+            final Section section = new Section(scope);
+            sections.put(scope, section);
+            sectionList.add(section.root);
+        }
+        add(sectionList, BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel();
+        bottom.setLayout(new BoxLayout(bottom, BoxLayout.Y_AXIS));
+        bottom.setOpaque(false);
+        bottom.add(forecast.build());
+        bottom.add(changes.build());
+        bottom.add(buildDiagnostics());
+        add(bottom, BorderLayout.SOUTH);
+        revalidate();
+    }
+
+    /**
+     * Name search and rank filters. Every change queries the sections' indexes and
+     * patches their tables; nothing is rescanned.
+     */
+    private JComponent buildSearch()
+    {
+        searchField.setToolTipText("Search members by name");
+        searchField.setFont(FontManager.getRunescapeSmallFont());
+        searchField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override public void insertUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void removeUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        });
+
+        for (JComboBox<String> filter : List.of(currentFilter, targetFilter))
+        {
+            filter.setFocusable(false);
+            filter.setFont(FontManager.getRunescapeSmallFont());
+            filter.addItem(ANY_RANK);
+            filter.addActionListener(e -> {
+                if (!updatingFilters) applyFilter();
+            });
+        }
+        currentFilter.setToolTipText("Current rank");
+        targetFilter.setToolTipText("Next rank");
+
+        JPanel ranks = new JPanel(new GridLayout(1, 2, 4, 0));
+        ranks.setOpaque(false);
+        ranks.add(currentFilter);
+        ranks.add(targetFilter);
+
+        JPanel root = new JPanel(new BorderLayout(0, 4));
+        root.setOpaque(false);
+        root.setBorder(new EmptyBorder(6, 0, 0, 0));
+        root.add(searchField, BorderLayout.NORTH);
+        root.add(ranks, BorderLayout.SOUTH);
+        return root;
+    }
+
+    private void applyFilter()
+    {
+        final long start = System.nanoTime();
+        for (Section section : sections.values()) section.applyFilter(false);
+        metrics.searched(System.nanoTime() - start);
+    }
+
+    /**
+     * Sorts every due list by the clicked column. Each order is kept ready by the sections'
+     * sort indexes, so this only picks the rows out again.
+     */
+    private void setSortOrder(DueSortIndex.Order order)
+    {
+        if (order == sortOrder) return;
+        sortOrder = order;
+        final long start = System.nanoTime();
+        for (Section section : sections.values())
+        {
+            section.applyFilter(true);
+            section.table.getTableHeader().repaint();
+        }
+        metrics.searched(System.nanoTime() - start);
+    }
+
+    private static String selectedRank(JComboBox<String> filter)
+    {
+        final Object selected = filter.getSelectedItem();
+        return selected == null || ANY_RANK.equals(selected) ? null : selected.toString();
+    }
+
+    // offers the ranks present in any list, keeping the current choice even if it disappeared
+    private void updateRankFilters()
+    {
+        final Set<String> titles = new TreeSet<>();
+        for (Section section : sections.values()) titles.addAll(section.index.getRankTitles());
+
+        updatingFilters = true;
+        try
+        {
+            for (JComboBox<String> filter : List.of(currentFilter, targetFilter))
+            {
+                final Object selected = filter.getSelectedItem();
+                final Set<String> items = new TreeSet<>(titles);
+                if (selected != null && !ANY_RANK.equals(selected)) items.add(selected.toString());
+
+                final DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+                model.addElement(ANY_RANK);
+                for (String title : items) model.addElement(title);
+                model.setSelectedItem(selected == null ? ANY_RANK : selected);
+                filter.setModel(model);
+            }
+        }
+        finally
+        {
+            updatingFilters = false;
+        }
+    }
+
+    /**
+     * Asks for a new forecast if the forecast section is open. Safe to call from any thread.
+     */
+    public void refreshForecast()
+    {
+        forecast.refresh();
+    }
 
-        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
-        content.setBackground(ColorScheme.DARK_GRAY_COLOR);
+    /**
+     * @param lines one line per upcoming crossing, earliest first
+     */
+    public void setForecast(List<String> lines)
+    {
+        forecast.setLines(lines);
+    }
 
-        content.add(makeHeaderRow());
+    /**
+     * Asks for the recent roster changes if their section is open. Safe to call from any thread.
+     */
+    public void refreshChanges()
+    {
+        changes.refresh();
+    }
+
+    /**
+     * @param lines one line per recorded change, oldest first
+     */
+    public void setChanges(List<String> lines)
+    {
+        changes.setLines(lines);
+    }
 
-        content.setAlignmentX(0f);
-        add(content, BorderLayout.SOUTH);
+    private static void styleToggle(JButton toggle)
+    {
+        toggle.setFocusable(false);
+        toggle.setHorizontalAlignment(SwingConstants.LEFT);
+        toggle.setBorderPainted(false);
+        toggle.setContentAreaFilled(false);
+        toggle.setForeground(Color.LIGHT_GRAY);
+        toggle.setFont(FontManager.getRunescapeSmallFont());
     }
 
-    private JComponent makeWrappingNameCell(String text) {
-        JTextArea ta = new JTextArea(text);
-        ta.setFont(FontManager.getRunescapeSmallFont());
-        ta.setForeground(Color.WHITE);
-        ta.setOpaque(false);
-        ta.setEditable(false);
-        ta.setHighlighter(null);
-        ta.setLineWrap(true);
-        ta.setWrapStyleWord(true);
-        ta.setBorder(new EmptyBorder(0, 4, 1, 4));
-        ta.setSize(new Dimension(ClanRankUpNotifierPanel.NAME_COLUMN_WIDTH, Short.MAX_VALUE));
-        Dimension pref = ta.getPreferredSize();
-        Dimension fixed = new Dimension(ClanRankUpNotifierPanel.NAME_COLUMN_WIDTH, pref.height);
-        ta.setMinimumSize(new Dimension(ClanRankUpNotifierPanel.NAME_COLUMN_WIDTH, 0));
-        ta.setPreferredSize(fixed);
-        ta.setMaximumSize(new Dimension(ClanRankUpNotifierPanel.NAME_COLUMN_WIDTH, Integer.MAX_VALUE));
-        ta.setToolTipText(text);
-        return ta;
+    private static void styleText(JTextArea text)
+    {
+        text.setEditable(false);
+        text.setLineWrap(true);
+        text.setWrapStyleWord(true);
+        text.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        text.setForeground(Color.LIGHT_GRAY);
+        text.setFont(FontManager.getRunescapeSmallFont());
+        text.setBorder(new EmptyBorder(4, 4, 4, 4));
     }
 
+    /**
+     * Collapsed by default; the metrics are only formatted while it is open.
+     */
+    private JComponent buildDiagnostics()
+    {
+        JPanel root = new JPanel(new BorderLayout());
+        root.setOpaque(false);
+        root.setAlignmentX(0f);
+
+        styleToggle(diagnosticsToggle);
+        diagnosticsToggle.addActionListener(e -> {
+            diagnostics.setVisible(!diagnostics.isVisible());
+            refreshDiagnostics();
+            revalidate();
+        });
+
+        styleText(diagnosticsText);
+
+        JButton log = new JButton("Write to log");
+        log.setFocusable(false);
+        log.setMargin(new Insets(2, 8, 2, 8));
+        log.addActionListener(e -> metrics.logSummary());
+
+        JPanel logRow = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        logRow.setOpaque(false);
+        logRow.add(log);
+
+        diagnostics.setOpaque(false);
+        diagnostics.add(diagnosticsText, BorderLayout.CENTER);
+        diagnostics.add(logRow, BorderLayout.SOUTH);
+        diagnostics.setVisible(false);
+
+        root.add(diagnosticsToggle, BorderLayout.NORTH);
+        root.add(diagnostics, BorderLayout.CENTER);
+        refreshDiagnostics();
+        return root;
+    }
+
+    private void refreshDiagnostics()
+    {
+        final boolean open = diagnostics.isVisible();
+        diagnosticsToggle.setText((open ? "\u25BE" : "\u25B8") + " Diagnostics");
+        if (open) diagnosticsText.setText(String.join("\n", metrics.describe()));
+    }
+
+    @Override
     public void setBusy(boolean busy) {
         SwingUtilities.invokeLater(() -> runButton.setEnabled(!busy));
     }
 
-    public void setInfoText(String text) {
+    @Override
+    public void setInfoText(ClanScope scope, String text) {
+        final String info = text == null ? "" : text;
+        updateState(scope, s -> s.infoText.equals(info) ? s : new SectionState(s.visible, info, s.rows));
+    }
+
+    /**
+     * @param entries the due list, most days first
+     */
+    @Override
+    public void setRows(ClanScope scope, List<DueEntry> entries)
+    {
+        final List<DueEntry> rows = entries == null ? List.of() : entries;
+        updateState(scope, s -> new SectionState(s.visible, s.infoText, rows));
+    }
+
+    /**
+     * Shows or hides the section of a clan other than the main one.
+     */
+    @Override
+    public void setSectionVisible(ClanScope scope, boolean visible)
+    {
+        if (scope == ClanScope.CLAN) return;
+        updateState(scope, s -> s.visible == visible ? s : new SectionState(visible, s.infoText, s.rows));
+    }
+
+    private void updateState(ClanScope scope, UnaryOperator<SectionState> change)
+    {
+        final AtomicReference<SectionState> state = states.get(scope);
+        if (state.get() == state.updateAndGet(change)) return;
+        // one render in flight at a time; it picks up whatever is latest when it runs
+        if (active && renderQueued.compareAndSet(false, true)) SwingUtilities.invokeLater(this::render);
+    }
+
+    /**
+     * Applies every state that changed since it was last rendered. Runs on the EDT.
+     */
+    private void render()
+    {
+        renderQueued.set(false);
+        if (!built) return;
+
+        boolean layout = false;
+        boolean rowsChanged = false;
+        for (Section section : sections.values())
+        {
+            final SectionState state = states.get(section.scope).get();
+            final SectionState old = section.rendered;
+            if (state == old) continue;
+            section.rendered = state;
+
+            if (old == null || old.visible != state.visible)
+            {
+                section.root.setVisible(state.visible);
+                layout = true;
+            }
+            if (old == null || !old.infoText.equals(state.infoText))
+            {
+                section.infoLabel.setText(state.infoText);
+                section.infoLabel.setVisible(!state.infoText.isBlank());
+            }
+            // a new list with the same entries, as after a new day without changes, leaves the table alone
+            if (old == null || (old.rows != state.rows && section.order.update(state.rows)))
+            {
+                final long start = System.nanoTime();
+                section.index = DueListIndex.build(section.order.getRows());
+                section.applyFilter(false);
+                metrics.rendered(System.nanoTime() - start);
+                rowsChanged = true;
+            }
+        }
+
+        if (layout)
+        {
+            updateSectionTitles();
+            sectionList.revalidate();
+        }
+        if (rowsChanged) updateRankFilters();
+        refreshDiagnostics();
+    }
+
+    /**
+     * Shows a member's recorded rank changes, one per line, oldest first.
+     */
+    public void showHistory(String memberName, List<String> lines)
+    {
         SwingUtilities.invokeLater(() -> {
-            infoLabel.setText(text == null ? "" : text);
-            infoLabel.setVisible(text != null && !text.isBlank());
+            final JTextArea text = new JTextArea(lines.isEmpty()
+                    ? "No rank history recorded yet."
+                    : String.join("\n", lines));
+            text.setEditable(false);
+            text.setOpaque(false);
+            JOptionPane.showMessageDialog(this, text, "Rank history: " + memberName, JOptionPane.PLAIN_MESSAGE);
         });
     }
 
-    public void setRows(List<String> lines)
+    /**
+     * Lists the members ignored from the panel and offers to unignore a selection of them.
+     *
+     * @param ignored label to show, by member name
+     */
+    public void showIgnored(ClanScope scope, Map<String, String> ignored)
     {
         SwingUtilities.invokeLater(() -> {
-            content.removeAll();
-            content.add(makeHeaderRow());
-
-            if (lines == null || lines.isEmpty()) {
-                content.add(makeInfoRow("No promotions due.\nSomething wrong? Please check the plugin configuration."));
-            } else {
-                for (String line : lines) content.add(createMemberRow(line));
+            final String title = "Ignored members" + (scope == ClanScope.CLAN ? "" : ": " + scope.getDisplayName());
+            if (ignored.isEmpty())
+            {
+                JOptionPane.showMessageDialog(this, "No members are ignored from the panel.", title, JOptionPane.PLAIN_MESSAGE);
+                return;
             }
 
-            content.revalidate();
-            content.repaint();
+            final List<String> names = new ArrayList<>(ignored.keySet());
+            final JList<String> list = new JList<>(ignored.values().toArray(new String[0]));
+            list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            list.setVisibleRowCount(Math.min(12, names.size()));
+
+            final Object[] options = {"Unignore selected", "Close"};
+            final int choice = JOptionPane.showOptionDialog(this, new JScrollPane(list), title,
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+            if (choice != 0 || list.isSelectionEmpty()) return;
+
+            final List<String> selected = new ArrayList<>();
+            for (int i : list.getSelectedIndices()) selected.add(names.get(i));
+            if (ignoreActions != null) ignoreActions.unignore(scope, selected);
         });
     }
 
-    private JComponent makeInfoRow(String text) {
+    /**
+     * Reports how an export went, in a dialog.
+     */
+    public void showExportResult(String message, boolean failed)
+    {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, message, "Export",
+                failed ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE));
+    }
+
+    private JPopupMenu buildExportMenu()
+    {
+        JPopupMenu menu = new JPopupMenu();
+        for (RosterExporter.Format format : RosterExporter.Format.values())
+        {
+            final String extension = format.name().toLowerCase(Locale.ROOT);
+            JMenuItem toFile = new JMenuItem("Save as " + format.name() + "...");
+            toFile.addActionListener(ev -> {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setSelectedFile(new File("clan-roster." + extension));
+                if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+                if (onExport != null) onExport.accept(format, chooser.getSelectedFile());
+            });
+            menu.add(toFile);
+        }
+
+        JMenuItem toClipboard = new JMenuItem("Copy CSV to clipboard");
+        toClipboard.addActionListener(ev -> {
+            if (onExport != null) onExport.accept(RosterExporter.Format.CSV, null);
+        });
+        menu.add(toClipboard);
+        return menu;
+    }
+
+    // clan titles are only worth the space once there is more than one section
+    private void updateSectionTitles()
+    {
+        int shown = 0;
+        for (Section section : sections.values()) if (section.root.isVisible()) shown++;
+        for (Section section : sections.values()) section.titleLabel.setVisible(shown > 1);
+    }
+
+    private static JComponent makeInfoRow(String text) {
         JPanel row = new JPanel();
         row.setLayout(new BoxLayout(row, BoxLayout.X_AXIS));
         row.setBackground(ColorScheme.DARKER_GRAY_COLOR);
@@ -131,133 +561,387 @@ public class ClanRankUpNotifierPanel extends PluginPanel
         return row;
     }
 
-    private JPanel makeHeaderRow() {
-        JPanel row = new JPanel();
-        row.setLayout(new BoxLayout(row, BoxLayout.X_AXIS));
-        row.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        row.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createMatteBorder(0, 0, 1, 0, ColorScheme.DARK_GRAY_COLOR),
-                new EmptyBorder(6, 6, 6, 6)));
-
-        row.add(makeHeaderLabel("Name", NAME_COLUMN_WIDTH));
-        row.add(makeHeaderLabel("Days", DAYS_COLUMN_WIDTH));
-        row.add(makeHeaderLabel("Curr", CURRENT_RANK_COLUMN_WIDTH));
-        row.add(makeHeaderLabel("Next", NEXT_RANK_COLUMN_WIDTH));
-        row.add(Box.createHorizontalGlue());
-        row.setMaximumSize(new Dimension(Integer.MAX_VALUE, row.getPreferredSize().height));
-
-        return row;
-    }
+    /**
+     * @param memberNames the selected members, at least one
+     */
+    private JPopupMenu buildMemberMenu(final ClanScope scope, final List<String> memberNames)
+    {
+        final String who = memberNames.size() == 1 ? memberNames.get(0) : memberNames.size() + " members";
+        JPopupMenu menu = new JPopupMenu();
+        if (ignoreActions != null)
+        {
+            JMenuItem ignore = new JMenuItem("Ignore " + who);
+            ignore.addActionListener(ev -> ignoreActions.ignore(scope, memberNames, 0));
+            menu.add(ignore);
 
-    private JLabel makeHeaderLabel(String text, int width) {
-        JLabel l = new JLabel(text);
-        l.setFont(FontManager.getRunescapeSmallFont());
-        l.setForeground(ColorScheme.PROGRESS_COMPLETE_COLOR.darker());
-        l.setBorder(new EmptyBorder(0, 4, 0, 4));
-        l.setToolTipText(text);
-        fixWidth(l, width);
-        return l;
-    }
+            JMenu ignoreFor = new JMenu("Ignore " + who + " for");
+            for (int days : IGNORE_DAYS)
+            {
+                JMenuItem item = new JMenuItem(days + " days");
+                item.addActionListener(ev -> ignoreActions.ignore(scope, memberNames, days));
+                ignoreFor.add(item);
+            }
+            menu.add(ignoreFor);
+        }
 
-    private void fixWidth(JComponent c, int width) {
-        Dimension d = new Dimension(width, c.getPreferredSize().height);
-        c.setMinimumSize(new Dimension(width, d.height));
-        c.setPreferredSize(new Dimension(width, d.height));
-        c.setMaximumSize(new Dimension(width, Integer.MAX_VALUE));
+        if (memberNames.size() == 1)
+        {
+            JMenuItem history = new JMenuItem("Rank history");
+            history.addActionListener(ev -> {
+                if (onShowHistory != null) onShowHistory.accept(scope, memberNames.get(0));
+            });
+            menu.add(history);
+        }
+
+        if (ignoreActions != null)
+        {
+            menu.addSeparator();
+            JMenuItem list = new JMenuItem("Ignored members...");
+            list.addActionListener(ev -> ignoreActions.list(scope));
+            menu.add(list);
+        }
+        return menu;
     }
 
-    private JPanel createMemberRow(String text)
+    /**
+     * A section listing what a query over a number of days returned. Collapsed by default;
+     * the query only runs while it is open.
+     */
+    private final class DaysQuery
     {
-        String name = "";
-        String days = "";
-        String currentRank = "";
-        String nextRank = "";
+        private final String title;
+        private final String daysText;
+        private final String emptyText;
+        private final IntConsumer onQuery;
+        private final JButton toggle = new JButton();
+        private final JPanel body = new JPanel(new BorderLayout(0, 4));
+        private final JSpinner days = new JSpinner(new SpinnerNumberModel(7, 1, 365, 1));
+        private final JTextArea text = new JTextArea();
+
+        DaysQuery(String title, String daysText, String emptyText, IntConsumer onQuery)
+        {
+            this.title = title;
+            this.daysText = daysText;
+            this.emptyText = emptyText;
+            this.onQuery = onQuery;
+        }
 
-        String[] parts = text.split(",");
-        name = parts.length > 0 ? parts[0].trim() : "?";
-        days = parts.length > 1 ? parts[1].trim() : "?";
-        nextRank =  parts.length > 2 ? parts[2].trim() : "?";
-        currentRank = parts.length > 3 ? parts[3].trim() : "?";
+        JComponent build()
+        {
+            JPanel root = new JPanel(new BorderLayout());
+            root.setOpaque(false);
+            root.setAlignmentX(0f);
+
+            styleToggle(toggle);
+            toggle.addActionListener(e -> {
+                body.setVisible(!body.isVisible());
+                updateToggle();
+                refresh();
+                ClanRankUpNotifierPanel.this.revalidate();
+            });
+
+            JLabel daysLabel = new JLabel(daysText);
+            daysLabel.setForeground(Color.LIGHT_GRAY);
+            daysLabel.setFont(FontManager.getRunescapeSmallFont());
+            days.addChangeListener(e -> refresh());
+
+            JPanel daysRow = new JPanel(new BorderLayout(4, 0));
+            daysRow.setOpaque(false);
+            daysRow.add(daysLabel, BorderLayout.CENTER);
+            daysRow.add(days, BorderLayout.EAST);
+
+            styleText(text);
+
+            body.setOpaque(false);
+            body.add(daysRow, BorderLayout.NORTH);
+            body.add(text, BorderLayout.CENTER);
+            body.setVisible(false);
+
+            root.add(toggle, BorderLayout.NORTH);
+            root.add(body, BorderLayout.CENTER);
+            updateToggle();
+            return root;
+        }
+
+        private void updateToggle()
+        {
+            toggle.setText((body.isVisible() ? "\u25BE" : "\u25B8") + " " + title);
+        }
 
-        JPanel row = new JPanel();
-        row.setLayout(new BoxLayout(row, BoxLayout.X_AXIS));
-        row.setOpaque(true);
-        row.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        row.setBorder(new EmptyBorder(4, 6, 4, 6));
+        void refresh()
+        {
+            if (!active) return;
+            SwingUtilities.invokeLater(() -> {
+                if (body.isVisible() && onQuery != null) onQuery.accept((Integer) days.getValue());
+            });
+        }
 
-        final Color base = row.getBackground();
-        String finalName = name;
-        row.addMouseListener(new java.awt.event.MouseAdapter()
+        void setLines(List<String> lines)
         {
-            @Override public void mouseEntered(java.awt.event.MouseEvent e) { row.setBackground(base.brighter()); }
-            @Override public void mouseExited (java.awt.event.MouseEvent e) { row.setBackground(base); }
-        });
+            SwingUtilities.invokeLater(() -> text.setText(lines.isEmpty() ? emptyText : String.join("\n", lines)));
+        }
+    }
 
-        JComponent nameLabel = makeWrappingNameCell(name);
-        JLabel daysLabel = makeCell(days, DAYS_COLUMN_WIDTH, new Color(100, 225, 255));
-        daysLabel.setHorizontalAlignment(SwingConstants.RIGHT);
-        JLabel currentRankLabel = makeCell(currentRank, CURRENT_RANK_COLUMN_WIDTH, new Color(255, 230, 110));
-        JLabel nextRankLabel = makeCell(nextRank, NEXT_RANK_COLUMN_WIDTH, new Color(140, 255, 160));
+    /**
+     * What the member menu does with ignores. Called on the EDT.
+     */
+    public interface IgnoreActions
+    {
+        /**
+         * @param days how long to ignore the members, 0 for good
+         */
+        void ignore(ClanScope scope, List<String> names, int days);
 
-        row.add(nameLabel);
-        row.add(daysLabel);
-        row.add(currentRankLabel);
-        row.add(nextRankLabel);
-        row.add(Box.createHorizontalGlue());
+        void unignore(ClanScope scope, List<String> names);
 
-        Supplier<JPopupMenu> menu = () -> buildMemberMenu(finalName);
-        installPopup(row, menu);
-        installPopup(nameLabel, menu);
-        installPopup(daysLabel, menu);
-        installPopup(currentRankLabel, menu);
-        installPopup(nextRankLabel, menu);
+        /**
+         * Asks for {@link #showIgnored(ClanScope, Map)}.
+         */
+        void list(ClanScope scope);
+    }
 
-        JPanel wrapper = new JPanel(new BorderLayout());
-        wrapper.setOpaque(false);
-        wrapper.add(row, BorderLayout.CENTER);
-        wrapper.add(new JSeparator(JSeparator.HORIZONTAL), BorderLayout.SOUTH);
-        wrapper.setMaximumSize(new Dimension(Integer.MAX_VALUE, wrapper.getPreferredSize().height));
-        return wrapper;
+    /**
+     * What one clan's section shows. Replaced as a whole, never modified.
+     */
+    private static final class SectionState
+    {
+        private final boolean visible;
+        private final String infoText;
+        private final List<DueEntry> rows;
+
+        private SectionState(boolean visible, String infoText, List<DueEntry> rows)
+        {
+            this.visible = visible;
+            this.infoText = infoText;
+            this.rows = rows;
+        }
     }
 
-    private void installPopup(JComponent c, java.util.function.Supplier<JPopupMenu> menuSupplier)
+    /**
+     * Title, info line and due table of one clan.
+     */
+    private final class Section
     {
-        c.addMouseListener(new java.awt.event.MouseAdapter()
+        private final ClanScope scope;
+        private final JPanel root = new JPanel(new BorderLayout(0, 4));
+        private final JLabel titleLabel = new JLabel();
+        private final JLabel infoLabel = new JLabel();
+        private final DueTableModel model = new DueTableModel();
+        private final JTable table = new JTable(model);
+        private final JComponent emptyRow = makeInfoRow("No promotions due.\nSomething wrong? Please check the plugin configuration.");
+        private final JComponent noMatchRow = makeInfoRow("No due members match the search.");
+
+        private final DueSortIndex order = new DueSortIndex();
+        // built over the sort index's rows, so both agree on row positions
+        private DueListIndex index = DueListIndex.EMPTY;
+        private SectionState rendered;
+        private int hoveredRow = -1;
+
+        private Section(ClanScope scope)
         {
-            @Override public void mousePressed (java.awt.event.MouseEvent e) { maybe(e); }
-            @Override public void mouseReleased(java.awt.event.MouseEvent e) { maybe(e); }
+            this.scope = scope;
+
+            titleLabel.setText(scope.getDisplayName());
+            titleLabel.setFont(titleLabel.getFont().deriveFont(Font.BOLD, 12f));
+            titleLabel.setForeground(Color.WHITE);
+            titleLabel.setBorder(new EmptyBorder(6, 2, 0, 2));
+
+            infoLabel.setForeground(Color.LIGHT_GRAY);
+            infoLabel.setFont(infoLabel.getFont().deriveFont(Font.PLAIN, 12f));
+            infoLabel.setBorder(new EmptyBorder(2, 2, 2, 2));
+
+            JPanel labels = new JPanel(new BorderLayout());
+            labels.setOpaque(false);
+            labels.add(titleLabel, BorderLayout.NORTH);
+            labels.add(infoLabel, BorderLayout.CENTER);
+
+            setupTable();
+
+            JPanel content = new JPanel(new BorderLayout());
+            content.setBackground(ColorScheme.DARK_GRAY_COLOR);
+            content.add(table.getTableHeader(), BorderLayout.NORTH);
+            content.add(table, BorderLayout.CENTER);
+            JPanel messages = new JPanel();
+            messages.setLayout(new BoxLayout(messages, BoxLayout.Y_AXIS));
+            messages.setOpaque(false);
+            messages.add(emptyRow);
+            messages.add(noMatchRow);
+            content.add(messages, BorderLayout.SOUTH);
+            emptyRow.setVisible(false);
+            noMatchRow.setVisible(false);
+
+            root.setOpaque(false);
+            root.add(labels, BorderLayout.NORTH);
+            root.add(content, BorderLayout.CENTER);
+            root.setAlignmentX(0f);
+            root.setVisible(false);
+        }
+
+        /**
+         * @param reordered the sort order changed, the table is replaced rather than patched
+         */
+        private void applyFilter(boolean reordered)
+        {
+            final BitSet matches = index.match(searchField.getText(),
+                    selectedRank(currentFilter), selectedRank(targetFilter));
+            final List<DueEntry> rows = index.getRows();
+            final List<DueEntry> shown = new ArrayList<>(matches == null ? rows.size() : matches.cardinality());
+            for (int row : order.positions(sortOrder))
+            {
+                if (matches == null || matches.get(row)) shown.add(rows.get(row));
+            }
 
-            private void maybe(java.awt.event.MouseEvent e)
+            if (reordered) model.replace(shown);
+            else model.update(shown);
+            emptyRow.setVisible(rows.isEmpty());
+            noMatchRow.setVisible(shown.isEmpty() && !rows.isEmpty());
+            hoveredRow = -1;
+        }
+
+        private void setupTable()
+        {
+            table.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+            table.setForeground(Color.WHITE);
+            table.setGridColor(ColorScheme.DARK_GRAY_COLOR);
+            table.setShowVerticalLines(false);
+            table.setRowHeight(ROW_HEIGHT);
+            table.setFillsViewportHeight(false);
+            table.setFocusable(false);
+            table.setRowSelectionAllowed(true);
+            table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+
+            JTableHeader header = table.getTableHeader();
+            header.setReorderingAllowed(false);
+            header.setResizingAllowed(false);
+            header.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+            header.setDefaultRenderer(new HeaderRenderer());
+            header.addMouseListener(new MouseAdapter()
             {
-                if (!e.isPopupTrigger()) return;
+                @Override
+                public void mouseClicked(MouseEvent e)
+                {
+                    final int column = header.columnAtPoint(e.getPoint());
+                    if (column >= 0 && SwingUtilities.isLeftMouseButton(e)) setSortOrder(DueTableModel.orderOf(column));
+                }
+            });
+
+            configureColumn(DueTableModel.COL_NAME, NAME_COLUMN_WIDTH, NAME_COLOR, SwingConstants.LEFT);
+            configureColumn(DueTableModel.COL_DAYS, DAYS_COLUMN_WIDTH, DAYS_COLOR, SwingConstants.RIGHT);
+            configureColumn(DueTableModel.COL_CURRENT, CURRENT_RANK_COLUMN_WIDTH, CURRENT_RANK_COLOR, SwingConstants.LEFT);
+            configureColumn(DueTableModel.COL_NEXT, NEXT_RANK_COLUMN_WIDTH, NEXT_RANK_COLOR, SwingConstants.LEFT);
+
+            // one listener pair for the whole table: hover highlight and the member popup
+            MouseAdapter mouse = new MouseAdapter()
+            {
+                @Override public void mouseMoved(MouseEvent e) { setHoveredRow(table.rowAtPoint(e.getPoint())); }
+                @Override public void mouseExited(MouseEvent e) { setHoveredRow(-1); }
+                @Override public void mousePressed(MouseEvent e) { maybePopup(e); }
+                @Override public void mouseReleased(MouseEvent e) { maybePopup(e); }
+            };
+            table.addMouseListener(mouse);
+            table.addMouseMotionListener(mouse);
+        }
+
+        private void configureColumn(int index, int width, Color fg, int alignment)
+        {
+            TableColumn column = table.getColumnModel().getColumn(index);
+            column.setPreferredWidth(width);
+            column.setMinWidth(width);
+            column.setCellRenderer(new CellRenderer(this, fg, alignment));
+        }
 
-                JPopupMenu menu = menuSupplier.get();
-                if (menu == null || menu.getComponentCount() == 0) return;
+        private void setHoveredRow(int row)
+        {
+            if (row == hoveredRow) return;
+            int old = hoveredRow;
+            hoveredRow = row;
+            repaintRow(old);
+            repaintRow(row);
+        }
+
+        private void repaintRow(int row)
+        {
+            if (row < 0 || row >= table.getRowCount()) return;
+            Rectangle r = table.getCellRect(row, 0, true);
+            r.width = table.getWidth();
+            table.repaint(r);
+        }
 
-                menu.show(e.getComponent(), e.getX(), e.getY());
-                e.consume();
-            }
-        });
+        private void maybePopup(MouseEvent e)
+        {
+            if (!e.isPopupTrigger()) return;
+
+            int row = table.rowAtPoint(e.getPoint());
+            if (row < 0) return;
+
+            // the menu acts on the selection, or on the clicked row alone if it is not part of it
+            if (!table.isRowSelected(row)) table.setRowSelectionInterval(row, row);
+            final List<String> names = new ArrayList<>();
+            for (int selected : table.getSelectedRows()) names.add(model.getNameAt(selected));
+
+            JPopupMenu menu = buildMemberMenu(scope, names);
+            if (menu.getComponentCount() == 0) return;
+
+            menu.show(e.getComponent(), e.getX(), e.getY());
+            e.consume();
+        }
     }
 
-    private JPopupMenu buildMemberMenu(final String memberName)
+    /**
+     * Shared renderer for one column, reused for every row of the table.
+     */
+    private static final class CellRenderer extends DefaultTableCellRenderer
     {
-        JPopupMenu menu = new JPopupMenu();
-        JMenuItem ignore = new JMenuItem("Ignore " + memberName);
-        ignore.addActionListener(ev -> {
-            if (onIgnoreUser != null) onIgnoreUser.accept(memberName);
-        });
-        menu.add(ignore);
-        return menu;
+        private final Section section;
+        private final Color foreground;
+
+        private CellRenderer(Section section, Color foreground, int alignment)
+        {
+            this.section = section;
+            this.foreground = foreground;
+            setHorizontalAlignment(alignment);
+            setBorder(new EmptyBorder(0, 4, 0, 4));
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column)
+        {
+            String text = value == null ? "" : value.toString();
+            setText(text);
+            setToolTipText(text);
+            setFont(FontManager.getRunescapeSmallFont());
+            setForeground(foreground);
+            setBackground(isSelected ? ColorScheme.MEDIUM_GRAY_COLOR
+                    : row == section.hoveredRow ? ColorScheme.DARKER_GRAY_COLOR.brighter()
+                    : ColorScheme.DARKER_GRAY_COLOR);
+            return this;
+        }
     }
 
-    private JLabel makeCell(String text, int width, Color fg) {
-        JLabel l = new JLabel(text);
-        l.setFont(FontManager.getRunescapeSmallFont());
-        l.setForeground(fg);
-        l.setBorder(new EmptyBorder(0, 4, 0, 4));
-        fixWidth(l, width);
-        l.setToolTipText(text);
-        return l;
+    /**
+     * Marks the column the lists are sorted by.
+     */
+    private final class HeaderRenderer extends DefaultTableCellRenderer
+    {
+        private HeaderRenderer()
+        {
+            setBorder(new EmptyBorder(6, 4, 6, 4));
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column)
+        {
+            String text = value == null ? "" : value.toString();
+            final boolean sorted = DueTableModel.orderOf(column) == sortOrder;
+            setText(sorted ? text + " \u25BE" : text);
+            setToolTipText("Sort by " + text);
+            setFont(FontManager.getRunescapeSmallFont());
+            setForeground(ColorScheme.PROGRESS_COMPLETE_COLOR.darker());
+            setBackground(ColorScheme.DARKER_GRAY_COLOR);
+            return this;
+        }
     }
 }
@@ -7,6 +7,7 @@ import net.runelite.api.clan.*;
 import net.runelite.api.events.ClanChannelChanged;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.client.Notifier;
+import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
@@ -20,12 +21,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.swing.SwingUtilities;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @PluginDescriptor(
         name = "Clan Rank Up Notifier",
@@ -47,22 +63,36 @@ public class ClanRankUpNotifierPlugin extends Plugin
     private ClanRankUpNotifierPanel panel;
     private NavigationButton navButton;
 
-    private ScheduledFuture<?> task;
+    // next date wakeup, replaced after every evaluation
+    private volatile ScheduledFuture<?> task;
+    private ScanCoalescer scanCoalescer;
+    private volatile ScanPipeline pipeline;
+    private volatile boolean configDirty = true;
+    private volatile List<ClanTracker> trackers = List.of();
+    private final ScanMetrics metrics = new ScanMetrics();
+    private volatile ScanRecording.Writer recording;
 
-    private volatile NavigableMap<Integer, String> rules = new TreeMap<>();
-    private final Map<String, String> notifiedToday = new HashMap<>();
-    private volatile Set<String> eligibleRanksSet = Set.of();
-    private volatile Set<String> ignoredUsersSet   = Set.of();
-    private volatile boolean muteNotifications = true;
-    private LocalDate lastNotificationDate = null;
+    // set from a manual check being accepted until its scan is current
+    private final AtomicBoolean manualCheckQueued = new AtomicBoolean();
+    private File dir;
 
     @Provides
     ClanRankUpNotifierConfig provideConfig(ConfigManager cm) { return cm.getConfig(ClanRankUpNotifierConfig.class); }
 
+    /**
+     * Only what must exist before the first scan is built here. The toolbar needs the panel
+     * instance, but its components are built when it is first opened; a tracker's engine,
+     * stores and history are created and read by the first scan on the executor.
+     */
     @Override
     protected void startUp()
     {
-        panel = new ClanRankUpNotifierPanel(this::runManualCheck, this::ignoreUserFromPanel);
+        panel = new ClanRankUpNotifierPanel(metrics, this::runManualCheck, new ClanRankUpNotifierPanel.IgnoreActions()
+        {
+            @Override public void ignore(ClanScope scope, List<String> names, int days) { ignoreFromPanel(scope, names, days); }
+            @Override public void unignore(ClanScope scope, List<String> names) { unignoreFromPanel(scope, names); }
+            @Override public void list(ClanScope scope) { listIgnoredFromPanel(scope); }
+        }, this::showHistoryFromPanel, this::exportFromPanel, this::forecastFromPanel, this::changesFromPanel);
 
         BufferedImage icon = null;
         try { icon = ImageUtil.loadImageResource(ClanRankUpNotifierPlugin.class, "icon.png"); }
@@ -78,94 +108,330 @@ public class ClanRankUpNotifierPlugin extends Plugin
 
         clientToolbar.addNavigation(navButton);
 
-        parseRules();
-        clientThread.invokeLater(this::checkRosterAndNotify);
+        dir = new File(RuneLite.RUNELITE_DIR, "clan-rank-up-notifier");
+        final List<ClanTracker> created = new ArrayList<>();
+        for (ClanScope scope : ClanScope.values())
+        {
+            final ClanTracker tracker = new ClanTracker(scope, dir, scheduler, System::currentTimeMillis, this::sendDigest);
+            tracker.getDigest().setTiming(config.notificationWindow() * 1000L, config.notificationInterval() * 1000L);
+            created.add(tracker);
+        }
+        trackers = List.copyOf(created);
+        configDirty = true;
+        pipeline = new ScanPipeline(trackers, scheduler, clientThread::invokeLater, metrics, new ClientHost(), panel);
+        scanCoalescer = new ScanCoalescer(scheduler, ScanCoalescer.DEFAULT_WINDOW_MS, this::onScanRequested);
+        scheduler.execute(this::updateRecording);
+        // logged out there is nothing to scan yet; logging in requests the first scan. Enabled while logged
+        // in, no login event follows, so without this scan due members would wait for the next trigger
+        if (client.getGameState() == GameState.LOGGED_IN) scanCoalescer.request(ScanTrigger.STARTUP);
         LOG.info("[ClanRankNotifier] started");
     }
 
     @Override
     protected void shutDown()
     {
+        if (scanCoalescer != null) { scanCoalescer.cancel(); scanCoalescer = null; }
+        if (pipeline != null) { pipeline.shutDown(); pipeline = null; }
         if (task != null) { task.cancel(true); task = null; }
+        // undelivered members were never recorded as notified, the next session offers them again
+        int dropped = 0;
+        for (ClanTracker tracker : trackers) dropped += tracker.getDigest().cancel();
+        if (dropped > 0) LOG.info("[ClanRankNotifier] {} pending notifications left for the next session", dropped);
+        trackers = List.of();
+        stopRecording();
         if (navButton != null) { clientToolbar.removeNavigation(navButton); navButton = null; }
         panel = null;
         LOG.info("[ClanRankNotifier] stopped");
     }
 
+    /**
+     * Re-reads the config into the engines. Must run on the executor. An engine only
+     * re-evaluates everything when one of its values actually changed.
+     */
     private void parseRules()
     {
-        TreeMap<Integer, String> tmp = new TreeMap<>();
-        for (String line : config.rules().split("\\R"))
+        for (ClanTracker tracker : trackers)
         {
-            String s = line.trim();
-            if (s.isEmpty() || s.startsWith("#")) continue;
-            String[] parts = s.split("=");
-            if (parts.length != 2) continue;
+            final RankConfig config = rankConfigFor(tracker.getScope());
+            if (tracker.setConfig(config)) record(w -> w.config(tracker.getScope(), config));
+        }
+    }
 
-            try {
-                int days = Integer.parseInt(parts[0].trim());
-                String rank = parts[1].trim();
-                tmp.put(days, rank);
-            } catch (NumberFormatException ignored) { }
+    /**
+     * Starts or stops the scan recording to match the config. Runs on the executor.
+     */
+    private void updateRecording()
+    {
+        if (!config.recordScans())
+        {
+            stopRecording();
+            return;
+        }
+        if (recording != null || trackers.isEmpty()) return;
+
+        if (configDirty)
+        {
+            configDirty = false;
+            parseRules();
+        }
+        final String stamp = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+        final File file = new File(new File(dir, "recordings"), "scans-" + stamp + ".crr");
+        try {
+            final ScanRecording.Writer writer = new ScanRecording.Writer(file.toPath());
+            final LocalDate today = LocalDate.now();
+            for (ClanTracker tracker : trackers)
+            {
+                writer.config(tracker.getScope(), tracker.getEngine().getConfig());
+                writer.ignores(tracker.getScope(), tracker.getIgnores().list(today));
+            }
+            recording = writer;
+            LOG.info("[ClanRankNotifier] recording scans to {}", file);
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to record scans to {}", file, e);
+        }
+    }
+
+    private synchronized void stopRecording()
+    {
+        final ScanRecording.Writer writer = recording;
+        if (writer == null) return;
+        recording = null;
+        try {
+            writer.close();
+            LOG.info("[ClanRankNotifier] recorded {} scan events", writer.getEvents());
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to finish the scan recording", e);
+        }
+    }
+
+    private interface RecordingWrite
+    {
+        void write(ScanRecording.Writer writer) throws IOException;
+    }
+
+    /**
+     * Adds an event to the scan recording, if one is running. Any thread.
+     */
+    private void record(RecordingWrite write)
+    {
+        final ScanRecording.Writer writer = recording;
+        if (writer == null) return;
+        try {
+            write.write(writer);
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] scan recording failed, stopping it", e);
+            stopRecording();
         }
-        rules = tmp;
+    }
 
-        eligibleRanksSet = csvToLowerSet(config.eligibleRanks());
-        ignoredUsersSet  = csvToLowerSet(config.ignoredUsers());
-        muteNotifications = config.muteNotifications();
+    private RankConfig rankConfigFor(ClanScope scope)
+    {
+        switch (scope)
+        {
+            case GROUP_IRONMAN:
+                return new RankConfig(
+                        config.gimRules(),
+                        RankConfig.csvToLowerSet(config.gimEligibleRanks()),
+                        RankConfig.csvToKeySet(config.gimIgnoredUsers()),
+                        config.muteNotifications());
+            default:
+                return new RankConfig(
+                        config.rules(),
+                        RankConfig.csvToLowerSet(config.eligibleRanks()),
+                        RankConfig.csvToKeySet(config.ignoredUsers()),
+                        config.muteNotifications());
+        }
     }
 
-    private void ignoreUserFromPanel(String name)
+    /**
+     * Ignores go to the clan's {@link IgnoreStore}, not the config, so they neither rewrite
+     * the ignore list nor cause a full evaluation; the scan only re-evaluates these members.
+     *
+     * @param days how long to ignore them, 0 for good
+     */
+    private void ignoreFromPanel(ClanScope scope, List<String> names, int days)
     {
-        if (name == null || name.isBlank()) return;
+        scheduler.execute(() ->
+        {
+            final ClanTracker tracker = trackerFor(scope);
+            if (tracker == null) return;
+
+            final LocalDate today = LocalDate.now();
+            final IgnoreStore ignores = tracker.getIgnores();
+            ignores.ignore(names, days > 0 ? today.plusDays(days) : null, today);
+            ignores.flush();
+            record(w -> w.ignores(scope, ignores.list(today)));
+            requestScan(ScanTrigger.IGNORE);
+        });
+    }
 
-        String n = name.trim();
+    private void unignoreFromPanel(ClanScope scope, List<String> names)
+    {
+        scheduler.execute(() ->
+        {
+            final ClanTracker tracker = trackerFor(scope);
+            if (tracker == null) return;
+
+            final IgnoreStore ignores = tracker.getIgnores();
+            if (ignores.unignore(names) == 0) return;
+            ignores.flush();
+            record(w -> w.ignores(scope, ignores.list(LocalDate.now())));
+            requestScan(ScanTrigger.IGNORE);
+        });
+    }
 
-        clientThread.invokeLater(() ->
+    private void listIgnoredFromPanel(ClanScope scope)
+    {
+        scheduler.execute(() ->
         {
-            String current = config.ignoredUsers();
-            Set<String> set = new java.util.LinkedHashSet<>(); // stable order
+            final ClanRankUpNotifierPanel panel = this.panel;
+            final ClanTracker tracker = trackerFor(scope);
+            if (panel == null || tracker == null) return;
 
-            if (current != null && !current.isBlank())
+            final Map<String, String> ignored = new LinkedHashMap<>();
+            for (IgnoreStore.Entry entry : tracker.getIgnores().list(LocalDate.now()))
             {
-                for (String p : current.split(","))
+                ignored.put(entry.getName(), entry.getExpires() == null
+                        ? entry.getName()
+                        : entry.getName() + " (until " + entry.getExpires().minusDays(1) + ")");
+            }
+            panel.showIgnored(scope, ignored);
+        });
+    }
+
+    /**
+     * Queries run on the executor, so they never overlap an evaluation writing the history.
+     */
+    private void showHistoryFromPanel(ClanScope scope, String name)
+    {
+        final MemberKey key = MemberKey.of(name);
+        if (key == null) return;
+
+        scheduler.execute(() ->
+        {
+            final ClanRankUpNotifierPanel panel = this.panel;
+            final ClanTracker tracker = trackerFor(scope);
+            if (panel == null || tracker == null) return;
+
+            final List<String> lines = new ArrayList<>();
+            for (RosterHistory.Change change : tracker.getHistory().historyOf(key)) lines.add(change.toString());
+            panel.showHistory(name, lines);
+        });
+    }
+
+    /**
+     * Streams the last evaluated rosters on the executor, so neither the client nor the
+     * EDT waits for it. The clipboard needs the whole text, so that copy is built in memory.
+     */
+    private void exportFromPanel(RosterExporter.Format format, File target)
+    {
+        scheduler.execute(() ->
+        {
+            final ClanRankUpNotifierPanel panel = this.panel;
+            if (panel == null) return;
+
+            final StringWriter clipboard = target == null ? new StringWriter() : null;
+            final LocalDate today = LocalDate.now();
+            int rows;
+            // the writer is its own resource, so it is closed even if the exporter fails to start
+            try (Writer writer = target == null ? clipboard : Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8);
+                 RosterExporter out = new RosterExporter(writer, format))
+            {
+                for (ClanTracker tracker : trackers)
                 {
-                    String t = p.trim();
-                    if (!t.isEmpty()) set.add(t);
+                    if (tracker.isEnabled()) out.add(tracker.getScope().getDisplayName(), tracker.getEngine(), today);
                 }
+                rows = out.getRows();
+            } catch (IOException e) {
+                LOG.warn("[ClanRankNotifier] export to {} failed", target, e);
+                panel.showExportResult("Export failed: " + e.getMessage(), true);
+                return;
             }
 
-            boolean exists = set.stream().anyMatch(x -> x.equalsIgnoreCase(n));
-            if (!exists) set.add(n);
+            if (clipboard != null)
+            {
+                final String text = clipboard.toString();
+                SwingUtilities.invokeLater(() -> Toolkit.getDefaultToolkit().getSystemClipboard()
+                        .setContents(new StringSelection(text), null));
+                panel.showExportResult("Copied " + rows + " members to the clipboard.", false);
+            }
+            else
+            {
+                panel.showExportResult("Exported " + rows + " members to " + target + ".", false);
+            }
+        });
+    }
 
-            String updated = String.join(", ", set);
+    /**
+     * Range query over each clan's forecast index, on the executor where the engines live.
+     */
+    private void forecastFromPanel(int days)
+    {
+        scheduler.execute(() ->
+        {
+            final ClanRankUpNotifierPanel panel = this.panel;
+            if (panel == null) return;
 
-            configManager.setConfiguration("clanrankupnotifier", "ignorelist", updated);
+            final LocalDate today = LocalDate.now();
+            final List<ClanTracker> enabled = new ArrayList<>();
+            for (ClanTracker tracker : trackers) if (tracker.isEnabled()) enabled.add(tracker);
 
-            parseRules();
-            checkRosterAndNotify();
+            final List<String> lines = new ArrayList<>();
+            for (ClanTracker tracker : enabled)
+            {
+                final String prefix = enabled.size() > 1 ? tracker.getScope().getDisplayName() + ": " : "";
+                for (ForecastIndex.Crossing c : tracker.getEngine().getForecast().between(today, today.plusDays(days)))
+                {
+                    lines.add(String.format("%s  %s%s, %s → %s", c.getDate(), prefix, c.getName(),
+                            c.getCurrentRankName(), c.getTargetRankName()));
+                }
+            }
+            panel.setForecast(lines);
         });
     }
 
+    /**
+     * Range query over each clan's roster history, on the executor where the histories are written.
+     */
+    private void changesFromPanel(int days)
+    {
+        scheduler.execute(() ->
+        {
+            final ClanRankUpNotifierPanel panel = this.panel;
+            if (panel == null) return;
+
+            final LocalDate today = LocalDate.now();
+            final List<ClanTracker> enabled = new ArrayList<>();
+            for (ClanTracker tracker : trackers) if (tracker.isEnabled()) enabled.add(tracker);
 
-    private static Set<String> csvToLowerSet(String s) {
-        if (s == null) return Set.of();
-        String[] parts = s.split(",");
-        Set<String> out = new HashSet<>();
-        for (String p : parts) {
-               String t = p.trim().toLowerCase();
-                if (!t.isEmpty()) out.add(t);
+            final List<String> lines = new ArrayList<>();
+            for (ClanTracker tracker : enabled)
+            {
+                final String prefix = enabled.size() > 1 ? tracker.getScope().getDisplayName() + ": " : "";
+                for (RosterHistory.Change c : tracker.getHistory().changesBetween(today.minusDays(days - 1), today))
+                {
+                    lines.add(String.format("%s  %s%s, %s", c.getDate(), prefix, c.getName(), c.describe()));
+                }
             }
-        return out;
+            panel.setChanges(lines);
+        });
+    }
+
+    private ClanTracker trackerFor(ClanScope scope)
+    {
+        for (ClanTracker tracker : trackers) if (tracker.getScope() == scope) return tracker;
+        return null;
     }
 
-    private ClanSettings getClan()
+    private ClanSettings getClan(ClanScope scope)
     {
         try {
-            ClanSettings cs = client.getClanSettings(ClanID.CLAN);
+            ClanSettings cs = client.getClanSettings(scope.getClanId());
             if (cs != null && cs.getMembers() != null) return cs;
         } catch (Throwable ignored) { }
 
+        if (scope != ClanScope.CLAN) return null;
+
         try {
             ClanSettings cs = client.getClanSettings();
             if (cs != null && cs.getMembers() != null) return cs;
@@ -178,110 +444,160 @@ public class ClanRankUpNotifierPlugin extends Plugin
     public void onGameStateChanged(GameStateChanged e)
     {
         if (e.getGameState() == GameState.LOGGED_IN)
-            clientThread.invokeLater(this::checkRosterAndNotify);
+        {
+            for (ClanTracker tracker : trackers) tracker.forgetRankTitles();
+            requestScan(ScanTrigger.LOGIN);
+        }
     }
 
     @Subscribe
     public void onClanChannelChanged(ClanChannelChanged e)
     {
-        clientThread.invokeLater(this::checkRosterAndNotify);
+        for (ClanTracker tracker : trackers) tracker.forgetRankTitles();
+        requestScan(ScanTrigger.CLAN_CHANNEL);
     }
 
     @Subscribe
     public void onConfigChanged(ConfigChanged e)
     {
         if (!"clanrankupnotifier".equals(e.getGroup())) return;
-        parseRules();
-        clientThread.invokeLater(this::checkRosterAndNotify);
-    }
-
-    private void checkRosterAndNotify()
-    {
-        if (client.getGameState() != GameState.LOGGED_IN) return;
-
-        ClanSettings cs = getClan();
-        if (cs == null || rules.isEmpty())
+        configDirty = true;
+        if ("recordScans".equals(e.getKey()))
         {
-            panel.setRows(List.of());
+            scheduler.execute(this::updateRecording);
             return;
         }
-        else
-        {
-            panel.setInfoText("");
-        }
 
-        LocalDate today = LocalDate.now();
-        if (!today.equals(lastNotificationDate))
+        // muting drops the pending digests once the scan applies the config; one sent before that is
+        // refused by sendDigest, so its members stay unrecorded either way
+        for (ClanTracker tracker : trackers)
         {
-            notifiedToday.clear();
-            lastNotificationDate = today;
+            tracker.getDigest().setTiming(config.notificationWindow() * 1000L, config.notificationInterval() * 1000L);
         }
+        requestScan(ScanTrigger.CONFIG);
+    }
 
-        final List<String> due = new ArrayList<>();
+    private void requestScan(ScanTrigger trigger)
+    {
+        final ScanCoalescer coalescer = scanCoalescer;
+        if (coalescer == null) return;
+        record(w -> w.request(trigger));
+        coalescer.request(trigger);
+    }
 
-        for (ClanMember member : cs.getMembers())
+    /**
+     * Called on the executor once a burst of triggers has settled, or for a manual check.
+     * Supersedes the scan in progress, if any.
+     */
+    private void onScanRequested(Set<ScanTrigger> reasons)
+    {
+        final ScanPipeline pipeline = this.pipeline;
+        if (pipeline == null) return;
+        if (configDirty)
         {
-            final String name = member.getName();
-            if (name == null || name.isBlank()) continue;
-
-            final LocalDate joined = getJoinDate(member);
-            if (joined == null) continue;
-
-            final long days = ChronoUnit.DAYS.between(joined, today);
-            final Map.Entry<Integer, String> rule = rules.floorEntry((int) days);
-            if (rule == null) continue;
-
-            final String targetRankName = rule.getValue();
-            final ClanRank currentRank = member.getRank();
-            final ClanTitle currentClanRankTitle = cs.titleForRank(currentRank);
-            final boolean noRank = currentClanRankTitle == null;
-            final String currentRankName = noRank ? "Not ranked" : cs.titleForRank(currentRank).getName();
-
-            final boolean eligibleRank = eligibleRanksSet.contains(currentRankName.toLowerCase());
-            final boolean correctRank = targetRankName.trim().equalsIgnoreCase(currentRankName.trim());
-            final boolean inIgnoreList = ignoredUsersSet.contains(name.toLowerCase());
-
-            if (!eligibleRank || correctRank || noRank || inIgnoreList) continue;
-
-            due.add(String.format("%s,%d,%s,%s", name, days, targetRankName, currentRankName));
-            final String last = notifiedToday.get(name);
-            if (!Objects.equals(last, targetRankName) && !muteNotifications) {
-                notifier.notify(String.format(
-                        "[Clan Rank] %s is %d days in clan → due for %s (current: %s)",
-                        name, days, targetRankName, currentRankName));
-                notifiedToday.put(name, targetRankName);
-            }
+            configDirty = false;
+            parseRules();
         }
+        pipeline.request(reasons);
+    }
 
-        due.sort((a, b) -> {
-                        int da = Integer.parseInt(a.split(",")[1].trim());
-                        int db = Integer.parseInt(b.split(",")[1].trim());
-                        return Integer.compare(db, da);
-                    });
+    /**
+     * Schedules a scan for local midnight of the given day, replacing the previous wakeup.
+     * Nothing runs until then; if no date can change anything, no wakeup is scheduled at
+     * all. Runs on the executor.
+     */
+    private void scheduleWakeup(LocalDate next)
+    {
+        final ScheduledFuture<?> previous = task;
+        if (previous != null) previous.cancel(false);
+        task = null;
+        if (next == null || scanCoalescer == null) return;
+
+        // a wakeup that fires early finds the date unchanged, skips and lands here again
+        final long delay = Math.max(0, Duration.between(ZonedDateTime.now(),
+                next.atStartOfDay(ZoneId.systemDefault())).toMillis());
+        task = scheduler.schedule(() -> requestScan(ScanTrigger.ROLLOVER), delay, TimeUnit.MILLISECONDS);
+        LOG.debug("[ClanRankNotifier] next date check on {} in {} ms", next, delay);
+    }
 
-        panel.setInfoText("Members due: " + due.size());
-        panel.setRows(due);
+    /**
+     * Called on the executor when a digest is due.
+     *
+     * @return false if notifications got muted in the meantime, its members stay unrecorded
+     */
+    private boolean sendDigest(String message)
+    {
+        if (config.muteNotifications()) return false;
+        metrics.notificationSent();
+        notifier.notify(message);
+        return true;
     }
 
+    /**
+     * Clicks while a scan is in progress are absorbed; the button is disabled until it completes.
+     * The scan only starts on the executor, so an accepted click counts as in progress right away.
+     */
     private void runManualCheck()
     {
-        clientThread.invoke(() -> {
+        final ScanPipeline pipeline = this.pipeline;
+        if (pipeline == null || pipeline.isScanning()) return;
+        if (!manualCheckQueued.compareAndSet(false, true)) return;
+
+        final ClanRankUpNotifierPanel panel = this.panel;
+        if (panel != null) panel.setBusy(true);
+        record(w -> w.request(ScanTrigger.MANUAL));
+        scheduler.execute(() -> {
             try {
-                panel.setBusy(true);
-                checkRosterAndNotify();
+                onScanRequested(EnumSet.of(ScanTrigger.MANUAL));
+            } catch (RuntimeException e) {
+                LOG.warn("[ClanRankNotifier] unable to start a manual check", e);
+                if (panel != null) panel.setBusy(false);
             } finally {
-                panel.setBusy(false);
+                // the new scan is current by now and keeps absorbing clicks until it completes
+                manualCheckQueued.set(false);
             }
         });
     }
 
-    private LocalDate getJoinDate(ClanMember member)
+    /**
+     * The scans' side of the client: rosters come from its clan settings, evaluated scans
+     * go to the recording, and a published scan schedules the next date check.
+     */
+    private final class ClientHost implements ScanPipeline.Host
     {
-        try {
-            LocalDate date = member.getJoinDate();
-            if (date != null) return date;
-        } catch (Throwable ignored) { }
+        @Override
+        public boolean isLoggedIn()
+        {
+            return client.getGameState() == GameState.LOGGED_IN;
+        }
 
-        return null;
+        @Override
+        public RosterSnapshot capture(ClanTracker tracker)
+        {
+            final ClanSettings cs = getClan(tracker.getScope());
+            return cs == null ? null : tracker.capture(cs);
+        }
+
+        @Override
+        public LocalDate today()
+        {
+            return LocalDate.now();
+        }
+
+        @Override
+        public void evaluating(long generation, Set<ScanTrigger> reasons, LocalDate today, Map<ClanScope, RosterSnapshot> rosters)
+        {
+            record(w -> w.scan(reasons, today, rosters));
+        }
+
+        @Override
+        public void published(LocalDate nextChange)
+        {
+            scheduleWakeup(nextChange);
+            final ClanRankUpNotifierPanel panel = ClanRankUpNotifierPlugin.this.panel;
+            if (panel == null) return;
+            panel.refreshForecast();
+            panel.refreshChanges();
+        }
     }
 }
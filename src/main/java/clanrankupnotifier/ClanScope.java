@@ -0,0 +1,45 @@
+package clanrankupnotifier;
+
+import net.runelite.api.clan.ClanID;
+
+/**
+ * The clans the plugin can watch. Each one has its own rules, eligible ranks and
+ * ignore list in the config, its own notification and history files, and its own
+ * section in the panel.
+ */
+enum ClanScope
+{
+    CLAN(ClanID.CLAN, "Clan", ""),
+    GROUP_IRONMAN(ClanID.GROUP_IRONMAN, "Group Ironman", "gim");
+
+    private final int clanId;
+    private final String displayName;
+    private final String fileSuffix;
+
+    ClanScope(int clanId, String displayName, String fileSuffix)
+    {
+        this.clanId = clanId;
+        this.displayName = displayName;
+        this.fileSuffix = fileSuffix;
+    }
+
+    /**
+     * @return the id passed to {@code Client.getClanSettings(int)}
+     */
+    int getClanId() { return clanId; }
+
+    String getDisplayName() { return displayName; }
+
+    String getNotificationTitle()
+    {
+        return this == CLAN ? "[Clan Rank]" : "[Clan Rank: " + displayName + "]";
+    }
+
+    /**
+     * @return the file name for this clan's copy of a per-clan file, e.g. {@code notified-gim.log}
+     */
+    String fileName(String base, String extension)
+    {
+        return fileSuffix.isEmpty() ? base + "." + extension : base + "-" + fileSuffix + "." + extension;
+    }
+}
@@ -0,0 +1,192 @@
+package clanrankupnotifier;
+
+import net.runelite.api.clan.ClanSettings;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Everything the plugin keeps per watched clan: the rank engine with its own
+ * notification state, the members ignored from the panel, the roster history and the
+ * notification digest.
+ * <p>
+ * The engine, ignores and history are only used by one evaluation at a time; the plugin runs the clans' evaluations in parallel but waits for all of them
+ * before the next scan. The rank title cache belongs to the client thread.
+ */
+final class ClanTracker
+{
+    private final ClanScope scope;
+    private final File dir;
+    // created on first use, on the executor or by the evaluation, so starting the plugin builds none of them
+    private RankEngine engine;
+    private IgnoreStore ignores;
+    private RosterHistory history;
+    private final NotificationDigest digest;
+    // every name seen in the clan this session, shared by its snapshots
+    private final NameTable names = new NameTable();
+
+    private volatile boolean enabled;
+    // the last rule table whose problems were reported
+    private RuleTable reportedRules;
+
+    // rank titles of the current clan settings, only touched on the client thread
+    private ClanSettings rankTitlesSource;
+    private String[] rankTitles;
+
+    /**
+     * @param dir      where the clan's state is kept, or null to keep it in memory and record no history
+     * @param executor runs the digest, the same executor the evaluations run on; null for no digest
+     * @param clock    the executor's time in milliseconds
+     * @param sink     sends a digest, returning false if it was not delivered
+     */
+    ClanTracker(ClanScope scope, File dir, ScheduledExecutorService executor, LongSupplier clock, Predicate<String> sink)
+    {
+        this.scope = scope;
+        this.dir = dir;
+        this.digest = executor == null ? null
+                : new NotificationDigest(executor, clock, scope.getNotificationTitle(), 0, 0, sink, this::markNotified);
+    }
+
+    ClanScope getScope() { return scope; }
+
+    RankEngine getEngine()
+    {
+        if (engine == null) engine = new RankEngine(new NotificationStore(fileOf("notified", "log")));
+        return engine;
+    }
+
+    IgnoreStore getIgnores()
+    {
+        if (ignores == null) ignores = new IgnoreStore(fileOf("ignored", "log"));
+        return ignores;
+    }
+
+    /**
+     * @return null for a tracker without a directory
+     */
+    RosterHistory getHistory()
+    {
+        if (history == null && dir != null) history = new RosterHistory(fileOf("history", "bin"));
+        return history;
+    }
+
+    private Path fileOf(String name, String extension)
+    {
+        return dir == null ? null : new File(dir, scope.fileName(name, extension)).toPath();
+    }
+
+    /**
+     * @return null for a tracker without an executor
+     */
+    NotificationDigest getDigest() { return digest; }
+
+    /**
+     * Called by the digest on the executor once it delivered these members. The executor
+     * never runs a digest while it waits for an evaluation, so the engine is not in use.
+     */
+    void markNotified(List<DueEntry> delivered)
+    {
+        getEngine().markNotified(delivered);
+    }
+
+    /**
+     * @return false while a clan other than the main one has no rules configured, it is not scanned then
+     */
+    boolean isEnabled() { return enabled; }
+
+    /**
+     * Applies a new config. Must run where the engine is used. A muted config drops the
+     * pending digest; its members stay unrecorded, and unmuting is a config change, whose
+     * full evaluation offers them again.
+     *
+     * @return true if the config differs from the current one
+     */
+    boolean setConfig(RankConfig config)
+    {
+        if (config.isMuteNotifications() && digest != null) digest.cancel();
+        // the main clan always gets scanned, so its section can explain missing rules
+        enabled = scope == ClanScope.CLAN || (config.getRules() != null && !config.getRules().isBlank());
+        return getEngine().setConfig(config);
+    }
+
+    /**
+     * Evaluates a roster and records it in the history.
+     *
+     * @param snapshot the roster, or null if the clan is not available
+     * @return null if the clan is not available
+     */
+    RankEngine.Result evaluate(RosterSnapshot snapshot, LocalDate today, boolean force)
+    {
+        if (snapshot == null)
+        {
+            getEngine().reset();
+            return null;
+        }
+        final RankEngine engine = getEngine();
+        engine.setExtraIgnored(getIgnores().activeOn(today));
+        final RankEngine.Result result = engine.evaluate(snapshot, today, force);
+        final RosterHistory history = getHistory();
+        if (history != null && result.getStatus() != RankEngine.Result.Status.SKIPPED) history.record(snapshot, today);
+        return result;
+    }
+
+    /**
+     * Rule problems are reported once per parsed rule table, not on every scan.
+     *
+     * @return the table's problems if it differs from the last one passed in, otherwise none
+     */
+    synchronized List<String> newRuleProblems(RuleTable rules)
+    {
+        if (rules == reportedRules) return List.of();
+        reportedRules = rules;
+        return rules.getProblems();
+    }
+
+    /**
+     * @return the first day the last result can change, through the date or an expiring ignore
+     */
+    LocalDate nextChange(LocalDate today)
+    {
+        final LocalDate day = getEngine().nextChange();
+        final LocalDate expiry = getIgnores().nextExpiry(today);
+        if (day == null) return expiry;
+        return expiry == null || day.isBefore(expiry) ? day : expiry;
+    }
+
+    /**
+     * Copies the roster out of the clan settings. Client thread only.
+     */
+    RosterSnapshot capture(ClanSettings cs)
+    {
+        return RosterSnapshot.capture(cs, rankTitlesOf(cs), names);
+    }
+
+    NameTable getNames() { return names; }
+
+    /**
+     * Titles are read once per clan settings instance and dropped when the clan channel changes.
+     * Client thread only.
+     */
+    String[] rankTitlesOf(ClanSettings cs)
+    {
+        if (cs != rankTitlesSource || rankTitles == null)
+        {
+            rankTitles = RosterSnapshot.captureRankTitles(cs);
+            rankTitlesSource = cs;
+        }
+        return rankTitles;
+    }
+
+    /**
+     * Client thread only.
+     */
+    void forgetRankTitles()
+    {
+        rankTitlesSource = null;
+    }
+}
@@ -0,0 +1,60 @@
+package clanrankupnotifier;
+
+import java.util.Objects;
+
+/**
+ * A member whose time in clan has reached a rule whose rank they do not hold yet.
+ */
+final class DueEntry
+{
+    private final MemberKey key;
+    private final String name;
+    private final int days;
+    private final int currentRank;
+    private final String currentRankName;
+    private final int targetRank;
+    private final String targetRankName;
+
+    DueEntry(MemberKey key, String name, int days, int currentRank, String currentRankName,
+             int targetRank, String targetRankName)
+    {
+        this.key = key;
+        this.name = name;
+        this.days = days;
+        this.currentRank = currentRank;
+        this.currentRankName = currentRankName;
+        this.targetRank = targetRank;
+        this.targetRankName = targetRankName;
+    }
+
+    MemberKey getKey() { return key; }
+
+    String getName() { return name; }
+
+    int getDays() { return days; }
+
+    int getCurrentRank() { return currentRank; }
+
+    String getCurrentRankName() { return currentRankName; }
+
+    int getTargetRank() { return targetRank; }
+
+    String getTargetRankName() { return targetRankName; }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof DueEntry)) return false;
+        DueEntry e = (DueEntry) o;
+        return key.equals(e.key) && name.equals(e.name) && days == e.days
+                && currentRank == e.currentRank && currentRankName.equals(e.currentRankName)
+                && targetRank == e.targetRank && targetRankName.equals(e.targetRankName);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(key, name, days, currentRank, currentRankName, targetRank, targetRankName);
+    }
+}
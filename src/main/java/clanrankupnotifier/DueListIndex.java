@@ -0,0 +1,172 @@
+package clanrankupnotifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Search index over the rows of one due list, rebuilt whenever the list changes and
+ * queried on every keystroke of the panel's search box. Matches are returned as row
+ * positions, so the panel can list them in whichever order it sorts by.
+ * <p>
+ * Names are matched by substring on their canonical form, the member key. Every 1, 2
+ * and 3 character substring of a name has a sorted posting list of rows; a query of up
+ * to three characters is a single posting list, a longer one intersects the posting
+ * lists of its trigrams and verifies the few remaining candidates. Current and target
+ * ranks have one bucket of rows each. Must be used on the EDT.
+ */
+final class DueListIndex
+{
+    static final DueListIndex EMPTY = build(List.of());
+
+    private static final int GRAM = 3;
+
+    private final List<DueEntry> rows;
+    private final String[] names;
+    private final Map<String, int[]> postings;
+    private final Map<String, BitSet> byCurrent;
+    private final Map<String, BitSet> byTarget;
+    private final Map<String, String> rankTitles;
+
+    private DueListIndex(List<DueEntry> rows, String[] names, Map<String, int[]> postings,
+                         Map<String, BitSet> byCurrent, Map<String, BitSet> byTarget, Map<String, String> rankTitles)
+    {
+        this.rows = rows;
+        this.names = names;
+        this.postings = postings;
+        this.byCurrent = byCurrent;
+        this.byTarget = byTarget;
+        this.rankTitles = rankTitles;
+    }
+
+    static DueListIndex build(List<DueEntry> rows)
+    {
+        final String[] names = new String[rows.size()];
+        final Map<String, int[]> building = new HashMap<>();
+        final Map<String, Integer> sizes = new HashMap<>();
+        final Map<String, BitSet> byCurrent = new HashMap<>();
+        final Map<String, BitSet> byTarget = new HashMap<>();
+        final Map<String, String> rankTitles = new TreeMap<>();
+        final Set<String> seen = new HashSet<>();
+
+        for (int i = 0; i < rows.size(); i++)
+        {
+            final DueEntry row = rows.get(i);
+            final String name = row.getKey().getKey();
+            names[i] = name;
+
+            // rows are added in order, so every posting list stays sorted
+            seen.clear();
+            for (int n = 1; n <= GRAM; n++)
+            {
+                for (int p = 0; p + n <= name.length(); p++)
+                {
+                    final String gram = name.substring(p, p + n);
+                    if (!seen.add(gram)) continue;
+
+                    int[] list = building.get(gram);
+                    final int size = sizes.getOrDefault(gram, 0);
+                    if (list == null) list = new int[4];
+                    else if (size == list.length) list = Arrays.copyOf(list, size * 2);
+                    list[size] = i;
+                    building.put(gram, list);
+                    sizes.put(gram, size + 1);
+                }
+            }
+
+            bucket(byCurrent, rankTitles, row.getCurrentRankName(), i);
+            bucket(byTarget, rankTitles, row.getTargetRankName(), i);
+        }
+
+        final Map<String, int[]> postings = new HashMap<>(building.size() * 2);
+        building.forEach((gram, list) -> postings.put(gram, Arrays.copyOf(list, sizes.get(gram))));
+        return new DueListIndex(List.copyOf(rows), names, postings, byCurrent, byTarget, rankTitles);
+    }
+
+    private static void bucket(Map<String, BitSet> buckets, Map<String, String> titles, String rank, int row)
+    {
+        final String key = RankTitleCache.normalize(rank);
+        buckets.computeIfAbsent(key, k -> new BitSet()).set(row);
+        titles.putIfAbsent(key, rank);
+    }
+
+    List<DueEntry> getRows() { return rows; }
+
+    /**
+     * @return every current and target rank title in the list, sorted
+     */
+    List<String> getRankTitles()
+    {
+        return new ArrayList<>(rankTitles.values());
+    }
+
+    /**
+     * @param text          part of the name, blank for any
+     * @param currentRank   required current rank title, null for any
+     * @param targetRank    required target rank title, null for any
+     * @return the positions of the matching rows, or null if nothing is filtered out
+     */
+    BitSet match(String text, String currentRank, String targetRank)
+    {
+        final String needle = text == null ? "" : MemberKey.canonicalize(text);
+        final BitSet current = currentRank == null ? null : byCurrent.get(RankTitleCache.normalize(currentRank));
+        final BitSet target = targetRank == null ? null : byTarget.get(RankTitleCache.normalize(targetRank));
+        if ((currentRank != null && current == null) || (targetRank != null && target == null)) return new BitSet();
+        if (needle.isEmpty() && current == null && target == null) return null;
+
+        if (needle.isEmpty())
+        {
+            final BitSet out = (BitSet) (current != null ? current : target).clone();
+            if (current != null && target != null) out.and(target);
+            return out;
+        }
+
+        final BitSet out = new BitSet(rows.size());
+        final boolean verify = needle.length() > GRAM;
+        for (int i : candidates(needle))
+        {
+            if (verify && !names[i].contains(needle)) continue;
+            if (matches(i, current, target)) out.set(i);
+        }
+        return out;
+    }
+
+    private static boolean matches(int row, BitSet current, BitSet target)
+    {
+        return (current == null || current.get(row)) && (target == null || target.get(row));
+    }
+
+    private int[] candidates(String needle)
+    {
+        if (needle.length() <= GRAM) return postings.getOrDefault(needle, new int[0]);
+
+        int[] result = null;
+        for (int p = 0; p + GRAM <= needle.length(); p++)
+        {
+            final int[] list = postings.get(needle.substring(p, p + GRAM));
+            if (list == null) return new int[0];
+            result = result == null ? list : intersect(result, list);
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b)
+    {
+        final int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length)
+        {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
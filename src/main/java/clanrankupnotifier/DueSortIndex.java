@@ -0,0 +1,118 @@
+package clanrankupnotifier;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * One due list in every order the panel can sort it by. Each order is a tree that
+ * {@link #update} patches with just the entries that changed; the row positions of an
+ * order are read off its tree the first time they are asked for after a change, so
+ * switching the sort column compares nothing. Must be used on the EDT.
+ */
+final class DueSortIndex
+{
+    enum Order
+    {
+        DAYS(RankEngine.MOST_DAYS_FIRST),
+        NAME(Comparator.comparing(DueEntry::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(DueEntry::getKey)),
+        CURRENT(Comparator.comparingInt(DueEntry::getCurrentRank).thenComparing(RankEngine.MOST_DAYS_FIRST)),
+        TARGET(Comparator.comparingInt(DueEntry::getTargetRank).thenComparing(RankEngine.MOST_DAYS_FIRST));
+
+        // every comparator ends on the member key, so no two entries of a list tie
+        private final Comparator<DueEntry> comparator;
+
+        Order(Comparator<DueEntry> comparator)
+        {
+            this.comparator = comparator;
+        }
+    }
+
+    private final Map<MemberKey, DueEntry> byKey = new HashMap<>();
+    private final Map<Order, TreeSet<DueEntry>> trees = new EnumMap<>(Order.class);
+    private final Map<Order, int[]> positions = new EnumMap<>(Order.class);
+    private List<DueEntry> rows = List.of();
+
+    DueSortIndex()
+    {
+        for (Order order : Order.values()) trees.put(order, new TreeSet<>(order.comparator));
+    }
+
+    /**
+     * Brings the index to the new list.
+     *
+     * @return false if no entry changed
+     */
+    boolean update(List<DueEntry> next)
+    {
+        boolean changed = false;
+        final Set<MemberKey> keep = new HashSet<>(next.size() * 2);
+        for (DueEntry entry : next)
+        {
+            keep.add(entry.getKey());
+            final DueEntry old = byKey.get(entry.getKey());
+            if (entry.equals(old)) continue;
+
+            if (old != null) removeFromTrees(old);
+            byKey.put(entry.getKey(), entry);
+            for (TreeSet<DueEntry> tree : trees.values()) tree.add(entry);
+            changed = true;
+        }
+
+        for (Iterator<DueEntry> it = byKey.values().iterator(); it.hasNext(); )
+        {
+            final DueEntry entry = it.next();
+            if (keep.contains(entry.getKey())) continue;
+            it.remove();
+            removeFromTrees(entry);
+            changed = true;
+        }
+
+        if (!changed) return false;
+        rows = List.copyOf(trees.get(Order.DAYS));
+        positions.clear();
+        return true;
+    }
+
+    /**
+     * @return the entries in {@link Order#DAYS} order; positions refer to this list
+     */
+    List<DueEntry> getRows() { return rows; }
+
+    /**
+     * @return the positions in {@link #getRows()} of the entries, in the given order. Shared, must
+     *         not be modified.
+     */
+    int[] positions(Order order)
+    {
+        int[] out = positions.get(order);
+        if (out != null) return out;
+
+        out = new int[rows.size()];
+        if (order == Order.DAYS)
+        {
+            for (int i = 0; i < out.length; i++) out[i] = i;
+        }
+        else
+        {
+            final Map<DueEntry, Integer> rowOf = new IdentityHashMap<>(rows.size() * 2);
+            for (int i = 0; i < rows.size(); i++) rowOf.put(rows.get(i), i);
+            int i = 0;
+            for (DueEntry entry : trees.get(order)) out[i++] = rowOf.get(entry);
+        }
+        positions.put(order, out);
+        return out;
+    }
+
+    private void removeFromTrees(DueEntry entry)
+    {
+        for (TreeSet<DueEntry> tree : trees.values()) tree.remove(entry);
+    }
+}
@@ -0,0 +1,161 @@
+package clanrankupnotifier;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table model behind the due list. {@link #update(List)} patches the current rows
+ * towards the new list and fires per-row insert/delete/update events, so the
+ * table only repaints what actually changed; {@link #replace(List)} swaps them
+ * wholesale when the order changes. Must be used on the EDT.
+ */
+final class DueTableModel extends AbstractTableModel
+{
+    static final int COL_NAME = 0;
+    static final int COL_DAYS = 1;
+    static final int COL_CURRENT = 2;
+    static final int COL_NEXT = 3;
+
+    private static final String[] COLUMNS = {"Name", "Days", "Curr", "Next"};
+
+    private final List<DueEntry> rows = new ArrayList<>();
+
+    /**
+     * @return the order the panel sorts by when the column's header is clicked
+     */
+    static DueSortIndex.Order orderOf(int column)
+    {
+        switch (column)
+        {
+            case COL_NAME: return DueSortIndex.Order.NAME;
+            case COL_CURRENT: return DueSortIndex.Order.CURRENT;
+            case COL_NEXT: return DueSortIndex.Order.TARGET;
+            default: return DueSortIndex.Order.DAYS;
+        }
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column)
+    {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex)
+    {
+        final DueEntry entry = rows.get(rowIndex);
+        switch (columnIndex)
+        {
+            case COL_NAME: return entry.getName();
+            case COL_DAYS: return entry.getDays();
+            case COL_CURRENT: return entry.getCurrentRankName();
+            case COL_NEXT: return entry.getTargetRankName();
+            default: return null;
+        }
+    }
+
+    String getNameAt(int rowIndex)
+    {
+        return rows.get(rowIndex).getName();
+    }
+
+    /**
+     * Replaces the rows with {@code next}, in one event. Used when the rows are reordered,
+     * which {@link #update} would turn into a move per row.
+     */
+    void replace(List<DueEntry> next)
+    {
+        rows.clear();
+        rows.addAll(next);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Replaces the rows with {@code next}, keyed by member.
+     */
+    void update(List<DueEntry> next)
+    {
+        final Set<MemberKey> keep = new HashSet<>(next.size() * 2);
+        for (DueEntry e : next) keep.add(e.getKey());
+
+        // drop rows that are gone, from the bottom up so indices stay valid
+        for (int i = rows.size() - 1; i >= 0; i--)
+        {
+            if (keep.contains(rows.get(i).getKey())) continue;
+            int end = i;
+            while (i > 0 && !keep.contains(rows.get(i - 1).getKey())) i--;
+            rows.subList(i, end + 1).clear();
+            fireTableRowsDeleted(i, end);
+        }
+
+        // every row left is in next. While patching, rows holds next up to i followed by the
+        // old rows not placed yet, in their old order; a tree counts the placed ones by old index,
+        // so a moved row's current index is found without searching
+        final List<DueEntry> old = new ArrayList<>(rows);
+        final Map<MemberKey, Integer> oldIndex = new HashMap<>(old.size() * 2);
+        for (int p = 0; p < old.size(); p++) oldIndex.put(old.get(p).getKey(), p);
+        final boolean[] placed = new boolean[old.size()];
+        final int[] placedTree = new int[old.size() + 1];
+        int first = 0;
+
+        for (int i = 0; i < next.size(); i++)
+        {
+            final DueEntry want = next.get(i);
+            final Integer p = oldIndex.get(want.getKey());
+            if (p == null)
+            {
+                rows.add(i, want);
+                fireTableRowsInserted(i, i);
+                continue;
+            }
+
+            while (placed[first]) first++;
+            if (p == first)
+            {
+                if (!rows.get(i).equals(want))
+                {
+                    rows.set(i, want);
+                    fireTableRowsUpdated(i, i);
+                }
+            }
+            else
+            {
+                // everything before i already matches, so a moved row can only be further down
+                final int from = i + (p - first) - (placedBefore(placedTree, p) - placedBefore(placedTree, first));
+                rows.remove(from);
+                fireTableRowsDeleted(from, from);
+                rows.add(i, want);
+                fireTableRowsInserted(i, i);
+            }
+            placed[p] = true;
+            for (int k = p + 1; k < placedTree.length; k += k & -k) placedTree[k]++;
+        }
+    }
+
+    /**
+     * @return how many old rows before {@code index} are placed, read off the Fenwick tree
+     */
+    private static int placedBefore(int[] tree, int index)
+    {
+        int count = 0;
+        for (int k = index; k > 0; k -= k & -k) count += tree[k];
+        return count;
+    }
+}
@@ -0,0 +1,138 @@
+package clanrankupnotifier;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The date each member will next cross a rule threshold that makes them due, kept
+ * sorted by date so "who becomes due in the next N days" is a range query.
+ * <p>
+ * The {@link RankEngine} updates it for every member it evaluates and drops members
+ * that left, so it follows the roster incrementally; a full evaluation rebuilds it.
+ * Only members that could become due are indexed: ignored, unranked and ineligible
+ * members and those already due have no entry.
+ */
+final class ForecastIndex
+{
+    private static final Comparator<Crossing> BY_DATE = Comparator
+            .comparingLong((Crossing c) -> c.epochDay)
+            .thenComparing(c -> c.key, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final TreeSet<Crossing> byDate = new TreeSet<>(BY_DATE);
+    private final Map<MemberKey, Crossing> byKey = new HashMap<>();
+
+    void clear()
+    {
+        byDate.clear();
+        byKey.clear();
+    }
+
+    /**
+     * Re-indexes one member after it was evaluated.
+     *
+     * @param status the member's status today
+     */
+    void update(RosterSnapshot.Member member, RankEvaluator.Status status, RuleTable rules,
+                RankTitleCache ranks, Set<MemberKey> ignored, long todayEpochDay)
+    {
+        remove(member.getKey());
+        switch (status)
+        {
+            case NO_RULE:
+            case AT_RANK:
+            case UNKNOWN_RANK:
+                break;
+            default:
+                return;
+        }
+        // these statuses are decided before the member's own rank is looked at
+        final int rank = member.getRankValue();
+        if (ranks.isUnranked(rank) || !ranks.isEligible(rank) || ignored.contains(member.getKey())) return;
+
+        final long joined = member.getJoinEpochDay();
+        final int rule = rules.nextRuleChanging(todayEpochDay - joined, member.getRankValue());
+        if (rule == RuleTable.NO_RULE) return;
+
+        final Crossing crossing = new Crossing(member.getKey(), member.getName(), joined + rules.threshold(rule),
+                ranks.displayName(member.getRankValue()), rules.targetName(rule));
+        byDate.add(crossing);
+        byKey.put(member.getKey(), crossing);
+    }
+
+    void remove(MemberKey key)
+    {
+        final Crossing old = byKey.remove(key);
+        if (old != null) byDate.remove(old);
+    }
+
+    /**
+     * @return crossings between both dates, inclusive, earliest first
+     */
+    List<Crossing> between(LocalDate from, LocalDate to)
+    {
+        if (to.isBefore(from)) return List.of();
+        // key-less bounds sort before every member on their day
+        final Crossing lo = new Crossing(null, null, from.toEpochDay(), null, null);
+        final Crossing hi = new Crossing(null, null, to.toEpochDay() + 1, null, null);
+        return new ArrayList<>(byDate.subSet(lo, true, hi, false));
+    }
+
+    /**
+     * @return crossings on or before {@code day}
+     */
+    List<Crossing> reachedBy(LocalDate day)
+    {
+        final Crossing hi = new Crossing(null, null, day.toEpochDay() + 1, null, null);
+        return new ArrayList<>(byDate.headSet(hi, false));
+    }
+
+    /**
+     * @return the day of the earliest crossing, or null if there is none
+     */
+    LocalDate earliest()
+    {
+        return byDate.isEmpty() ? null : byDate.first().getDate();
+    }
+
+    int size()
+    {
+        return byKey.size();
+    }
+
+    static final class Crossing
+    {
+        private final MemberKey key;
+        private final String name;
+        private final long epochDay;
+        private final String currentRankName;
+        private final String targetRankName;
+
+        private Crossing(MemberKey key, String name, long epochDay, String currentRankName, String targetRankName)
+        {
+            this.key = key;
+            this.name = name;
+            this.epochDay = epochDay;
+            this.currentRankName = currentRankName;
+            this.targetRankName = targetRankName;
+        }
+
+        MemberKey getKey() { return key; }
+
+        String getName() { return name; }
+
+        /**
+         * @return the day the member becomes due
+         */
+        LocalDate getDate() { return LocalDate.ofEpochDay(epochDay); }
+
+        String getCurrentRankName() { return currentRankName; }
+
+        String getTargetRankName() { return targetRankName; }
+    }
+}
@@ -0,0 +1,210 @@
+package clanrankupnotifier;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Members ignored from the panel, on top of the ignore list in the config. An ignore is
+ * either permanent or runs until an expiry date, after which it simply stops applying
+ * and is dropped.
+ * <p>
+ * Kept like the {@link NotificationStore}: an {@link AppendLog} of
+ * {@code +<TAB>key<TAB>name<TAB>expires} and {@code -<TAB>key} lines, read lazily and
+ * appended on {@link #flush()}.
+ * <p>
+ * Not thread-safe; used from the same thread as the {@link RankEngine} it feeds.
+ */
+final class IgnoreStore
+{
+    private final AppendLog log;
+    private final Map<MemberKey, Entry> entries = new HashMap<>();
+    private boolean loaded;
+
+    // the set handed to the engine; only replaced when its contents change, so the engine can compare by identity
+    private Set<MemberKey> active;
+    private LocalDate activeDay;
+    private LocalDate nextExpiry;
+
+    /**
+     * @param file the log file, or null to keep the state in memory only
+     */
+    IgnoreStore(Path file)
+    {
+        this.log = new AppendLog(file);
+        this.loaded = file == null;
+    }
+
+    /**
+     * Ignores members, replacing any earlier ignore of theirs.
+     *
+     * @param names   display names, as shown in the panel
+     * @param expires first day the ignore no longer applies, or null for a permanent ignore
+     * @return how many members were not ignored on that date before
+     */
+    int ignore(Collection<String> names, LocalDate expires, LocalDate today)
+    {
+        load();
+        int added = 0;
+        for (String name : names)
+        {
+            final MemberKey key = MemberKey.of(name);
+            if (key == null) continue;
+
+            final Entry old = entries.put(key, new Entry(name.trim(), expires));
+            if (old == null || !old.appliesOn(today)) added++;
+            log.add(addLine(key, entries.get(key)));
+        }
+        changed();
+        return added;
+    }
+
+    /**
+     * @return how many of the members were ignored here
+     */
+    int unignore(Collection<String> names)
+    {
+        load();
+        int removed = 0;
+        for (String name : names)
+        {
+            final MemberKey key = MemberKey.of(name);
+            if (key == null || entries.remove(key) == null) continue;
+            removed++;
+            log.add("-\t" + key.getKey());
+        }
+        if (removed > 0) changed();
+        return removed;
+    }
+
+    /**
+     * @return the members ignored on {@code today}; the same instance until something changes
+     */
+    Set<MemberKey> activeOn(LocalDate today)
+    {
+        load();
+        if (active != null && today.equals(activeDay) && (nextExpiry == null || today.isBefore(nextExpiry))) return active;
+
+        final Set<MemberKey> keys = new HashSet<>();
+        LocalDate next = null;
+        for (Iterator<Map.Entry<MemberKey, Entry>> it = entries.entrySet().iterator(); it.hasNext(); )
+        {
+            final Map.Entry<MemberKey, Entry> e = it.next();
+            if (!e.getValue().appliesOn(today))
+            {
+                // expired ignores are forgotten, the next compaction drops them from the log
+                it.remove();
+                continue;
+            }
+            keys.add(e.getKey());
+            final LocalDate expires = e.getValue().expires;
+            if (expires != null && (next == null || expires.isBefore(next))) next = expires;
+        }
+
+        // only a real change gets a new instance
+        final Set<MemberKey> result = Collections.unmodifiableSet(keys);
+        if (active == null || !active.equals(result)) active = result;
+        activeDay = today;
+        nextExpiry = next;
+        return active;
+    }
+
+    /**
+     * @return the first day an ignore runs out, or null if none will
+     */
+    LocalDate nextExpiry(LocalDate today)
+    {
+        activeOn(today);
+        return nextExpiry;
+    }
+
+    /**
+     * @return the members ignored on {@code today}, sorted by name
+     */
+    List<Entry> list(LocalDate today)
+    {
+        activeOn(today);
+        final List<Entry> out = new ArrayList<>(entries.values());
+        out.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+        return out;
+    }
+
+    /**
+     * Appends changes made since the last flush, compacting the log if it grew too large.
+     */
+    void flush()
+    {
+        log.flush(entries.size(), () ->
+        {
+            final List<String> lines = new ArrayList<>(entries.size());
+            for (Map.Entry<MemberKey, Entry> e : entries.entrySet()) lines.add(addLine(e.getKey(), e.getValue()));
+            return lines;
+        });
+    }
+
+    private void changed()
+    {
+        activeDay = null;
+    }
+
+    private void load()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        log.read(line ->
+        {
+            final String[] parts = line.split("\t", -1);
+            final MemberKey key = parts.length > 1 ? MemberKey.of(parts[1]) : null;
+            if (key == null) return;
+
+            if (parts[0].equals("-"))
+            {
+                entries.remove(key);
+            }
+            else if (parts[0].equals("+") && parts.length == 4)
+            {
+                try {
+                    entries.put(key, new Entry(parts[2], parts[3].isEmpty() ? null : LocalDate.parse(parts[3])));
+                } catch (RuntimeException ignored) { }
+            }
+        });
+    }
+
+    private static String addLine(MemberKey key, Entry e)
+    {
+        return "+\t" + key.getKey() + '\t' + e.name.replace('\t', ' ') + '\t' + (e.expires == null ? "" : e.expires.toString());
+    }
+
+    static final class Entry
+    {
+        private final String name;
+        private final LocalDate expires;
+
+        Entry(String name, LocalDate expires)
+        {
+            this.name = name;
+            this.expires = expires;
+        }
+
+        String getName() { return name; }
+
+        /**
+         * @return the first day the ignore no longer applies, null if it is permanent
+         */
+        LocalDate getExpires() { return expires; }
+
+        boolean appliesOn(LocalDate day)
+        {
+            return expires == null || day.isBefore(expires);
+        }
+    }
+}
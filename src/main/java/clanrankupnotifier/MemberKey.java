@@ -0,0 +1,83 @@
+package clanrankupnotifier;
+
+/**
+ * Canonical identity of a clan member. Jagex treats spaces, non-breaking spaces,
+ * underscores and hyphens in names as the same character and ignores case, so
+ * "Foo_Bar", "foo bar" and "Foo Bar" with a non-breaking space all map to the same key.
+ * The hash is computed once, so set and map lookups do not allocate.
+ */
+final class MemberKey implements Comparable<MemberKey>
+{
+    private final String key;
+    private final int hash;
+
+    private MemberKey(String key)
+    {
+        this.key = key;
+        this.hash = key.hashCode();
+    }
+
+    /**
+     * @return the key for the name, or null if the name is null or blank
+     */
+    static MemberKey of(String name)
+    {
+        if (name == null) return null;
+        final String key = canonicalize(name);
+        return key.isEmpty() ? null : new MemberKey(key);
+    }
+
+    static String canonicalize(String name)
+    {
+        final StringBuilder sb = new StringBuilder(name.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (c == ' ' || c == '\u00A0' || c == '_' || c == '-' || Character.isWhitespace(c))
+            {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace)
+            {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    String getKey()
+    {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof MemberKey)) return false;
+        MemberKey other = (MemberKey) o;
+        return hash == other.hash && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(MemberKey o)
+    {
+        return key.compareTo(o.key);
+    }
+
+    @Override
+    public String toString()
+    {
+        return key;
+    }
+}
@@ -0,0 +1,75 @@
+package clanrankupnotifier;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary of member names shared by the {@link RosterSnapshot}s of a clan, or of a
+ * whole audit: each distinct display name is stored once, with its {@link MemberKey},
+ * and snapshots only keep its id. Ids are never reused or removed, so a snapshot stays
+ * valid for as long as it is held.
+ * <p>
+ * Adding is synchronized. Reading is not: the arrays are only replaced by larger copies,
+ * so an id handed over together with its snapshot can be read from any thread.
+ */
+final class NameTable
+{
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile MemberKey[] keys = new MemberKey[64];
+    private int size;
+    private long entryBytes;
+
+    /**
+     * @return the id of the name, adding it if it is new, or -1 if the name is null or blank
+     */
+    synchronized int idOf(String name)
+    {
+        if (name == null) return -1;
+        final Integer id = ids.get(name);
+        if (id != null) return id;
+
+        final MemberKey key = MemberKey.of(name);
+        if (key == null) return -1;
+
+        String[] n = names;
+        MemberKey[] k = keys;
+        if (size == n.length)
+        {
+            n = Arrays.copyOf(n, size * 2);
+            k = Arrays.copyOf(k, size * 2);
+        }
+        n[size] = name;
+        k[size] = key;
+        names = n;
+        keys = k;
+        ids.put(name, size);
+        // two compact strings of 40 bytes plus their characters, the key object, and a hash map node with its bucket
+        entryBytes += 80 + name.length() + key.getKey().length() + 24 + 40;
+        return size++;
+    }
+
+    String name(int id)
+    {
+        return names[id];
+    }
+
+    MemberKey key(int id)
+    {
+        return keys[id];
+    }
+
+    synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Rough heap size: the id arrays, and per name its string, key, and lookup entry.
+     */
+    synchronized long estimatedBytes()
+    {
+        return 8L * names.length + entryBytes;
+    }
+}
@@ -0,0 +1,131 @@
+package clanrankupnotifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Turns due members into as few notifications as possible. Members offered within the
+ * coalescing window are sent as one digest, and at most one digest goes out per rate
+ * limit interval. Members that arrive while the limit holds are kept and go out with
+ * the next digest, so nothing is dropped; a digest lists the first few names and
+ * summarizes the rest. Only the members of a digest the sink actually delivered are
+ * reported as notified.
+ */
+final class NotificationDigest
+{
+    static final int MAX_LISTED = 5;
+
+    private final ScheduledExecutorService executor;
+    private final LongSupplier clock;
+    private final String title;
+    private final Predicate<String> sink;
+    private final Consumer<List<DueEntry>> delivered;
+
+    private long windowMs;
+    private long minIntervalMs;
+
+    private Map<MemberKey, DueEntry> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduled;
+    private long lastSentAt = Long.MIN_VALUE;
+
+    /**
+     * @param clock     the executor's time in milliseconds, {@code System::currentTimeMillis} unless replaying
+     * @param title     prefix of every notification, e.g. {@code [Clan Rank]}
+     * @param sink      sends a digest, returning false if it was not delivered
+     * @param delivered receives the members of every digest the sink delivered, on the executor
+     */
+    NotificationDigest(ScheduledExecutorService executor, LongSupplier clock, String title, long windowMs, long minIntervalMs,
+                       Predicate<String> sink, Consumer<List<DueEntry>> delivered)
+    {
+        this.executor = executor;
+        this.clock = clock;
+        this.title = title;
+        this.sink = sink;
+        this.delivered = delivered;
+        setTiming(windowMs, minIntervalMs);
+    }
+
+    /**
+     * Takes effect for the next digest that gets scheduled.
+     */
+    synchronized void setTiming(long windowMs, long minIntervalMs)
+    {
+        this.windowMs = Math.max(0, windowMs);
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+    }
+
+    synchronized void offer(Collection<DueEntry> entries)
+    {
+        if (entries.isEmpty()) return;
+
+        // a member who moved on to a later rank before the digest went out only shows up once
+        for (DueEntry entry : entries) pending.put(entry.getKey(), entry);
+
+        if (scheduled == null)
+        {
+            final long now = clock.getAsLong();
+            long at = now + windowMs;
+            if (lastSentAt != Long.MIN_VALUE) at = Math.max(at, lastSentAt + minIntervalMs);
+            scheduled = executor.schedule(this::flush, at - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops everything not sent yet, e.g. when notifications get muted. The dropped members
+     * were never reported as notified, so they are offered again later.
+     *
+     * @return the number of members dropped
+     */
+    synchronized int cancel()
+    {
+        if (scheduled != null) { scheduled.cancel(false); scheduled = null; }
+        final int dropped = pending.size();
+        pending = new LinkedHashMap<>();
+        return dropped;
+    }
+
+    private void flush()
+    {
+        final List<DueEntry> batch;
+        synchronized (this)
+        {
+            batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            scheduled = null;
+            if (batch.isEmpty()) return;
+            lastSentAt = clock.getAsLong();
+        }
+
+        if (sink.test(format(title, batch))) delivered.accept(batch);
+    }
+
+    static String format(String title, List<DueEntry> batch)
+    {
+        if (batch.size() == 1)
+        {
+            final DueEntry entry = batch.get(0);
+            return String.format("%s %s is %d days in clan → due for %s (current: %s)",
+                    title, entry.getName(), entry.getDays(), entry.getTargetRankName(), entry.getCurrentRankName());
+        }
+
+        final StringBuilder sb = new StringBuilder(title).append(' ').append(batch.size()).append(" members due: ");
+        final int listed = Math.min(batch.size(), MAX_LISTED);
+        for (int i = 0; i < listed; i++)
+        {
+            final DueEntry entry = batch.get(i);
+            if (i > 0) sb.append(", ");
+            sb.append(entry.getName()).append(" → ").append(entry.getTargetRankName());
+        }
+        if (batch.size() > listed) sb.append(" and ").append(batch.size() - listed).append(" more");
+        return sb.toString();
+    }
+}
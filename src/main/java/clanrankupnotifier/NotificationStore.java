@@ -0,0 +1,101 @@
+package clanrankupnotifier;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which target rank each member was last notified about, so a member is
+ * notified once per rank they become due for instead of once per session.
+ * <p>
+ * With a file, state is kept as an {@link AppendLog} of {@code key<TAB>rank} lines, read
+ * lazily on first use and appended on {@link #flush()}. Lines written by older versions
+ * carry the notification date as a third column, which is ignored. Without a file the
+ * state only lives in memory.
+ * <p>
+ * Not thread-safe; used from the same thread as the {@link RankEngine} that owns it.
+ */
+final class NotificationStore
+{
+    private final AppendLog log;
+    // member key to the target rank of their last notification
+    private final Map<MemberKey, String> records = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * @param file the log file, or null to keep the state in memory only
+     */
+    NotificationStore(Path file)
+    {
+        this.log = new AppendLog(file);
+        this.loaded = file == null;
+    }
+
+    static NotificationStore inMemory()
+    {
+        return new NotificationStore(null);
+    }
+
+    /**
+     * @return true if the last notification for this member was about the same target rank
+     */
+    boolean wasNotified(MemberKey key, String targetRank)
+    {
+        load();
+        return clean(targetRank).equals(records.get(key));
+    }
+
+    void record(MemberKey key, String targetRank)
+    {
+        load();
+        final String rank = clean(targetRank);
+        records.put(key, rank);
+        log.add(line(key.getKey(), rank));
+    }
+
+    int size()
+    {
+        load();
+        return records.size();
+    }
+
+    /**
+     * Appends records made since the last flush, compacting the log if it grew too large.
+     */
+    void flush()
+    {
+        log.flush(records.size(), () ->
+        {
+            final List<String> lines = new ArrayList<>(records.size());
+            for (Map.Entry<MemberKey, String> e : records.entrySet()) lines.add(line(e.getKey().getKey(), e.getValue()));
+            return lines;
+        });
+    }
+
+    private void load()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        log.read(line ->
+        {
+            final String[] parts = line.split("\t");
+            if (parts.length < 2 || parts.length > 3) return;
+
+            final MemberKey key = MemberKey.of(parts[0]);
+            if (key != null) records.put(key, parts[1]);
+        });
+    }
+
+    private static String line(String key, String targetRank)
+    {
+        return key + '\t' + targetRank;
+    }
+
+    private static String clean(String s)
+    {
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
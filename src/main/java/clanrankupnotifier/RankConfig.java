@@ -0,0 +1,85 @@
+package clanrankupnotifier;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The settings a rank evaluation depends on, detached from RuneLite's config manager
+ * so the engine can be used outside the client.
+ */
+final class RankConfig
+{
+    static final RankConfig EMPTY = new RankConfig("", Set.of(), Set.of(), true);
+
+    private final String rules;
+    private final Set<String> eligibleRanks;
+    private final Set<MemberKey> ignored;
+    private final boolean muteNotifications;
+
+    /**
+     * @param rules             rules in the {@code ClanRankUpNotifierConfig.rules()} format
+     * @param eligibleRanks     lower-cased rank titles or numbers; members with other ranks are skipped
+     * @param ignored           members that are never due
+     * @param muteNotifications true to never produce notifications
+     */
+    RankConfig(String rules, Collection<String> eligibleRanks, Collection<MemberKey> ignored, boolean muteNotifications)
+    {
+        this.rules = rules == null ? "" : rules;
+        this.eligibleRanks = Set.copyOf(eligibleRanks);
+        this.ignored = Set.copyOf(ignored);
+        this.muteNotifications = muteNotifications;
+    }
+
+    /**
+     * Lower-cased, trimmed, non-empty entries of a comma-separated list.
+     */
+    static Set<String> csvToLowerSet(String s)
+    {
+        if (s == null) return Set.of();
+        Set<String> out = new HashSet<>();
+        for (String p : s.split(",")) {
+            String t = p.trim().toLowerCase();
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    static Set<MemberKey> csvToKeySet(String s)
+    {
+        if (s == null) return Set.of();
+        Set<MemberKey> out = new HashSet<>();
+        for (String p : s.split(",")) {
+            MemberKey key = MemberKey.of(p);
+            if (key != null) out.add(key);
+        }
+        return out;
+    }
+
+    String getRules() { return rules; }
+
+    Set<String> getEligibleRanks() { return eligibleRanks; }
+
+    Set<MemberKey> getIgnored() { return ignored; }
+
+    boolean isMuteNotifications() { return muteNotifications; }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof RankConfig)) return false;
+        RankConfig that = (RankConfig) o;
+        return muteNotifications == that.muteNotifications
+                && rules.equals(that.rules)
+                && eligibleRanks.equals(that.eligibleRanks)
+                && ignored.equals(that.ignored);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(rules, eligibleRanks, ignored, muteNotifications);
+    }
+}
@@ -0,0 +1,376 @@
+package clanrankupnotifier;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Client-independent rank evaluation: roster snapshot in, due list and notification
+ * decisions out. Keeps the previous roster so that consecutive evaluations only
+ * re-evaluate members that changed, and keeps a {@link NotificationStore} of the members
+ * notified so far, so each member is only notified once per target rank. On a new day only due members
+ * and those whose {@link ForecastIndex} crossing has been reached are re-evaluated.
+ * <p>
+ * Not thread-safe; the plugin only runs one evaluation per engine at a time.
+ */
+final class RankEngine
+{
+    static final Comparator<DueEntry> MOST_DAYS_FIRST =
+            Comparator.comparingInt(DueEntry::getDays).reversed().thenComparing(DueEntry::getKey);
+
+    private RankConfig config = RankConfig.EMPTY;
+    private int configVersion = 0;
+    private Set<MemberKey> extraIgnored = Set.of();
+    private Set<MemberKey> ignored = Set.of();
+    // members whose ignored state changed since the last evaluation
+    private final Set<MemberKey> ignoreChanged = new HashSet<>();
+
+    private RuleTable ruleTable = RuleTable.EMPTY;
+    private RankTitleCache rankTitleCache = RankTitleCache.build(new String[0], List.of());
+    private String[] compiledTitles = null;
+    private int compiledConfigVersion = -1;
+
+    private RosterSnapshot lastRoster = RosterSnapshot.EMPTY;
+    private final Map<MemberKey, DueEntry> dueByKey = new HashMap<>();
+    private final ForecastIndex forecast = new ForecastIndex();
+    private final NotificationStore notifications;
+    private LocalDate lastEvaluationDate = null;
+    private int evaluatedConfigVersion = -1;
+    private RuleTable evaluatedRuleTable = null;
+    private long evaluatedFingerprint = 0L;
+
+    RankEngine()
+    {
+        this(NotificationStore.inMemory());
+    }
+
+    RankEngine(NotificationStore notifications)
+    {
+        this.notifications = notifications;
+    }
+
+    /**
+     * @return true if the config differs from the current one
+     */
+    boolean setConfig(RankConfig config)
+    {
+        if (this.config.equals(config)) return false;
+        this.config = config;
+        configVersion++;
+        ignored = union(config.getIgnored(), extraIgnored);
+        return true;
+    }
+
+    /**
+     * Replaces the members ignored on top of the config's ignore list. Unlike a config
+     * change this does not cause a full evaluation; the next one only re-evaluates the
+     * members whose ignored state changed.
+     */
+    void setExtraIgnored(Set<MemberKey> keys)
+    {
+        if (keys == extraIgnored) return;
+        for (MemberKey key : keys) if (!extraIgnored.contains(key)) ignoreChanged.add(key);
+        for (MemberKey key : extraIgnored) if (!keys.contains(key)) ignoreChanged.add(key);
+        extraIgnored = keys;
+        ignored = union(config.getIgnored(), keys);
+    }
+
+    /**
+     * @return the config's ignore list and the extra ignored members together
+     */
+    Set<MemberKey> getIgnored() { return ignored; }
+
+    private static Set<MemberKey> union(Set<MemberKey> a, Set<MemberKey> b)
+    {
+        if (b.isEmpty()) return a;
+        if (a.isEmpty()) return b;
+        final Set<MemberKey> out = new HashSet<>(a);
+        out.addAll(b);
+        return out;
+    }
+
+    RankConfig getConfig()
+    {
+        return config;
+    }
+
+    /**
+     * Forgets the previous roster, so the next evaluation starts from scratch.
+     */
+    void reset()
+    {
+        lastRoster = RosterSnapshot.EMPTY;
+        dueByKey.clear();
+        forecast.clear();
+        evaluatedConfigVersion = -1;
+        evaluatedRuleTable = null;
+    }
+
+    /**
+     * Records members whose notification actually went out. Members offered by an evaluation
+     * but never delivered stay unrecorded and are offered again by the next full evaluation.
+     */
+    void markNotified(Collection<DueEntry> delivered)
+    {
+        for (DueEntry entry : delivered) notifications.record(entry.getKey(), entry.getTargetRankName());
+        notifications.flush();
+    }
+
+    /**
+     * @param force evaluate even if the roster, config and date are unchanged since the last call
+     */
+    Result evaluate(RosterSnapshot snapshot, LocalDate today, boolean force)
+    {
+        final RuleTable rules = compile(snapshot.getRankTitles());
+        if (rules.isEmpty())
+        {
+            reset();
+            return new Result(Result.Status.NO_RULES, List.of(), List.of(), rules, null, 0, false, Result.NO_OUTCOMES);
+        }
+
+        final boolean newDay = !today.equals(lastEvaluationDate);
+        // a clock going backwards invalidates the forecast, so that is treated like a config change
+        final boolean backwards = lastEvaluationDate != null && today.isBefore(lastEvaluationDate);
+        if (!force && !newDay && configVersion == evaluatedConfigVersion && rules == evaluatedRuleTable
+                && snapshot.getFingerprint() == evaluatedFingerprint && ignoreChanged.isEmpty())
+        {
+            return new Result(Result.Status.SKIPPED, sortedDue(), List.of(), rules, null, 0, false, Result.NO_OUTCOMES);
+        }
+
+        lastEvaluationDate = today;
+
+        final RosterDiff diff = RosterDiff.between(lastRoster, snapshot);
+        final boolean full = backwards || configVersion != evaluatedConfigVersion || rules != evaluatedRuleTable;
+        final Collection<RosterSnapshot.Member> toEvaluate = full ? snapshot.getMembers()
+                : newDay || !ignoreChanged.isEmpty() ? incremental(diff, newDay ? today : null) : diff.getAffected();
+        ignoreChanged.clear();
+
+        if (full)
+        {
+            dueByKey.clear();
+            forecast.clear();
+        }
+        else
+        {
+            for (MemberKey key : diff.getRemoved())
+            {
+                dueByKey.remove(key);
+                forecast.remove(key);
+            }
+        }
+
+        final long todayEpochDay = today.toEpochDay();
+        final List<DueEntry> notify = new ArrayList<>();
+        final int[] outcomes = new int[RankEvaluator.Status.values().length];
+        for (RosterSnapshot.Member member : toEvaluate)
+        {
+            final RankEvaluator.Status status = RankEvaluator.status(member, rules, rankTitleCache, ignored, todayEpochDay);
+            outcomes[status.ordinal()]++;
+            forecast.update(member, status, rules, rankTitleCache, ignored, todayEpochDay);
+            if (status != RankEvaluator.Status.DUE)
+            {
+                dueByKey.remove(member.getKey());
+                continue;
+            }
+
+            final DueEntry entry = RankEvaluator.dueEntry(member, rules, rankTitleCache, todayEpochDay);
+            dueByKey.put(member.getKey(), entry);
+
+            if (!config.isMuteNotifications() && !notifications.wasNotified(entry.getKey(), entry.getTargetRankName()))
+            {
+                notify.add(entry);
+            }
+        }
+
+        lastRoster = diff.getCurrent();
+        evaluatedConfigVersion = configVersion;
+        evaluatedRuleTable = rules;
+        evaluatedFingerprint = snapshot.getFingerprint();
+
+        return new Result(Result.Status.EVALUATED, sortedDue(), notify, rules, diff, toEvaluate.size(), full, outcomes);
+    }
+
+    /**
+     * Members whose result can differ from the last evaluation: those that changed and
+     * those whose ignored state changed, plus on a new day those that are due (their day
+     * count is shown) and those whose next threshold has been reached.
+     *
+     * @param newDay today if the day changed, otherwise null
+     */
+    private Collection<RosterSnapshot.Member> incremental(RosterDiff diff, LocalDate newDay)
+    {
+        final RosterSnapshot current = diff.getCurrent();
+        final Map<MemberKey, RosterSnapshot.Member> members = new LinkedHashMap<>();
+        for (RosterSnapshot.Member m : diff.getAffected()) members.put(m.getKey(), m);
+        for (MemberKey key : ignoreChanged) addIfPresent(members, current, key);
+        if (newDay != null)
+        {
+            for (MemberKey key : dueByKey.keySet()) addIfPresent(members, current, key);
+            for (ForecastIndex.Crossing crossing : forecast.reachedBy(newDay)) addIfPresent(members, current, crossing.getKey());
+        }
+        return members.values();
+    }
+
+    private static void addIfPresent(Map<MemberKey, RosterSnapshot.Member> members,
+                                     RosterSnapshot current, MemberKey key)
+    {
+        if (members.containsKey(key)) return;
+        final int row = current.indexOf(key);
+        if (row >= 0) members.put(key, current.member(row));
+    }
+
+    /**
+     * @return the first day on which evaluating the same roster again can give a different
+     *         result, or null if no date will change it
+     */
+    LocalDate nextChange()
+    {
+        if (lastEvaluationDate == null) return null;
+        // due members show their day count, which changes every day
+        if (!dueByKey.isEmpty()) return lastEvaluationDate.plusDays(1);
+        return forecast.earliest();
+    }
+
+    /**
+     * @return the roster of the last evaluation, empty before the first one
+     */
+    Collection<RosterSnapshot.Member> getRoster() { return lastRoster.getMembers(); }
+
+    /**
+     * @return when members of the last evaluated roster become due next; only valid where the engine is used
+     */
+    ForecastIndex getForecast() { return forecast; }
+
+    /**
+     * @return the rules of the last evaluation, null before the first one
+     */
+    RuleTable getRuleTable() { return evaluatedRuleTable; }
+
+    /**
+     * @return the rank titles the rules of the last evaluation were resolved against
+     */
+    RankTitleCache getRankTitleCache() { return rankTitleCache; }
+
+    /**
+     * Stateless full evaluation of one snapshot, as used by the batch tool.
+     *
+     * @param parallel evaluate members on the common fork-join pool
+     */
+    static Result evaluateOnce(RosterSnapshot snapshot, RankConfig config, LocalDate today, boolean parallel)
+    {
+        final RankTitleCache ranks = RankTitleCache.build(snapshot.getRankTitles(), config.getEligibleRanks());
+        final RuleTable rules = RuleTable.compile(config.getRules(), ranks);
+        if (rules.isEmpty()) return new Result(Result.Status.NO_RULES, List.of(), List.of(), rules, null, 0, false, Result.NO_OUTCOMES);
+
+        final long todayEpochDay = today.toEpochDay();
+        final List<DueEntry> due = (parallel ? snapshot.getMembers().parallelStream() : snapshot.getMembers().stream())
+                .map(m -> RankEvaluator.evaluate(m, rules, ranks, config.getIgnored(), todayEpochDay))
+                .filter(Objects::nonNull)
+                .sorted(MOST_DAYS_FIRST)
+                .collect(Collectors.toList());
+
+        return new Result(Result.Status.EVALUATED, due, List.of(), rules, null, snapshot.size(), true, Result.NO_OUTCOMES);
+    }
+
+    /**
+     * Rebuilds the rank title cache and recompiles the rule table when the config or the
+     * clan's rank titles changed.
+     */
+    private RuleTable compile(String[] titles)
+    {
+        if (configVersion == compiledConfigVersion
+                && (titles == compiledTitles || Arrays.equals(titles, compiledTitles))) return ruleTable;
+
+        rankTitleCache = RankTitleCache.build(titles, config.getEligibleRanks());
+        ruleTable = RuleTable.compile(config.getRules(), rankTitleCache);
+        compiledTitles = titles;
+        compiledConfigVersion = configVersion;
+        return ruleTable;
+    }
+
+    private List<DueEntry> sortedDue()
+    {
+        final List<DueEntry> due = new ArrayList<>(dueByKey.values());
+        due.sort(MOST_DAYS_FIRST);
+        return due;
+    }
+
+    static final class Result
+    {
+        static final int[] NO_OUTCOMES = new int[RankEvaluator.Status.values().length];
+
+        enum Status
+        {
+            /** Rules were evaluated against the roster. */
+            EVALUATED,
+            /** Inputs were unchanged since the previous evaluation; the due list is the previous one. */
+            SKIPPED,
+            /** No usable rules. */
+            NO_RULES
+        }
+
+        private final Status status;
+        private final List<DueEntry> due;
+        private final List<DueEntry> notifications;
+        private final RuleTable rules;
+        private final RosterDiff diff;
+        private final int evaluated;
+        private final boolean full;
+        private final int[] outcomes;
+
+        Result(Status status, List<DueEntry> due, List<DueEntry> notifications, RuleTable rules,
+               RosterDiff diff, int evaluated, boolean full, int[] outcomes)
+        {
+            this.status = status;
+            this.due = due;
+            this.notifications = notifications;
+            this.rules = rules;
+            this.diff = diff;
+            this.evaluated = evaluated;
+            this.full = full;
+            this.outcomes = outcomes;
+        }
+
+        Status getStatus() { return status; }
+
+        /**
+         * @return members that are due, most days in clan first
+         */
+        List<DueEntry> getDue() { return due; }
+
+        /**
+         * @return members that became due for a rank they have not been notified about yet
+         */
+        List<DueEntry> getNotifications() { return notifications; }
+
+        RuleTable getRules() { return rules; }
+
+        /**
+         * @return the roster delta, or null if nothing was evaluated or the evaluation was stateless
+         */
+        RosterDiff getDiff() { return diff; }
+
+        /**
+         * @return how many members were run through the rules
+         */
+        int getEvaluated() { return evaluated; }
+
+        boolean isFull() { return full; }
+
+        /**
+         * @return how many of the evaluated members ended up in each {@link RankEvaluator.Status},
+         *         indexed by ordinal; all zero for the stateless evaluation. Must not be modified.
+         */
+        int[] getOutcomes() { return outcomes; }
+    }
+}
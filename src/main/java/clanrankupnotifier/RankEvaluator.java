@@ -0,0 +1,83 @@
+package clanrankupnotifier;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Decides whether a single member is due for a rank change. Stateless, so it can be
+ * used from any thread and outside the plugin.
+ */
+final class RankEvaluator
+{
+    /**
+     * Where a member stands, in the order exports list them.
+     */
+    enum Status
+    {
+        /** Reached a rule whose rank they do not hold. */
+        DUE,
+        /** Already holds the rank of the rule they reached. */
+        AT_RANK,
+        /** Has not reached the first rule yet. */
+        NO_RULE,
+        /** The rule they reached names a rank this clan does not have. */
+        UNKNOWN_RANK,
+        /** Current rank is not in the eligible ranks. */
+        NOT_ELIGIBLE,
+        /** Has no rank in the clan. */
+        UNRANKED,
+        IGNORED
+    }
+
+    private RankEvaluator() { }
+
+    /**
+     * @return the due entry for this member, or null if no promotion is due
+     */
+    static DueEntry evaluate(RosterSnapshot.Member member, RuleTable rules, RankTitleCache ranks,
+                             Set<MemberKey> ignored, LocalDate today)
+    {
+        return evaluate(member, rules, ranks, ignored, today.toEpochDay());
+    }
+
+    static DueEntry evaluate(RosterSnapshot.Member member, RuleTable rules, RankTitleCache ranks,
+                             Set<MemberKey> ignored, long todayEpochDay)
+    {
+        return status(member, rules, ranks, ignored, todayEpochDay) == Status.DUE
+                ? dueEntry(member, rules, ranks, todayEpochDay)
+                : null;
+    }
+
+    /**
+     * Builds the entry for a member {@link #status} found {@link Status#DUE}.
+     */
+    static DueEntry dueEntry(RosterSnapshot.Member member, RuleTable rules, RankTitleCache ranks, long todayEpochDay)
+    {
+        final long days = todayEpochDay - member.getJoinEpochDay();
+        final int rule = rules.ruleFor(days);
+        final int currentRank = member.getRankValue();
+        return new DueEntry(member.getKey(), member.getName(), (int) days,
+                currentRank, ranks.displayName(currentRank),
+                rules.targetRank(rule), rules.targetName(rule));
+    }
+
+    /**
+     * Decides whether a member is due, and if not, why.
+     */
+    static Status status(RosterSnapshot.Member member, RuleTable rules, RankTitleCache ranks,
+                         Set<MemberKey> ignored, long todayEpochDay)
+    {
+        final int rule = rules.ruleFor(todayEpochDay - member.getJoinEpochDay());
+        if (rule == RuleTable.NO_RULE) return Status.NO_RULE;
+
+        final int targetRank = rules.targetRank(rule);
+        if (targetRank == RuleTable.UNRESOLVED) return Status.UNKNOWN_RANK;
+
+        final int currentRank = member.getRankValue();
+        if (ignored.contains(member.getKey())) return Status.IGNORED;
+        if (ranks.isUnranked(currentRank)) return Status.UNRANKED;
+        if (currentRank == targetRank) return Status.AT_RANK;
+        if (!ranks.isEligible(currentRank)) return Status.NOT_ELIGIBLE;
+        return Status.DUE;
+    }
+}
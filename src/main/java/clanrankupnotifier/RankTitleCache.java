@@ -0,0 +1,121 @@
+package clanrankupnotifier;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-rank lookup table for one set of clan rank titles and one {@code eligibleRanks} config:
+ * title and eligible/unranked flags for every rank from
+ * {@link #MIN_RANK} to {@link #MAX_RANK}. All lookups are array probes by rank value.
+ */
+final class RankTitleCache
+{
+    static final int MIN_RANK = -1;
+    static final int MAX_RANK = 127;
+    static final int RANK_COUNT = MAX_RANK - MIN_RANK + 1;
+
+    static final String NOT_RANKED = "Not ranked";
+
+    private static final byte ELIGIBLE = 1;
+    private static final byte UNRANKED = 2;
+
+    private final String[] titles;
+    private final byte[] flags;
+    private final Map<String, Integer> rankByKey;
+
+    private RankTitleCache(String[] titles, byte[] flags, Map<String, Integer> rankByKey)
+    {
+        this.titles = titles;
+        this.flags = flags;
+        this.rankByKey = rankByKey;
+    }
+
+    /**
+     * @param titles   rank titles indexed by {@code rank - MIN_RANK}, null for untitled ranks
+     * @param eligible lower-cased entries of the {@code eligibleRanks} config, titles or rank numbers;
+     *                 empty makes every rank eligible
+     */
+    static RankTitleCache build(String[] titles, Collection<String> eligible)
+    {
+        final byte[] flags = new byte[RANK_COUNT];
+        final Map<String, Integer> rankByKey = new HashMap<>();
+
+        for (int i = 0; i < RANK_COUNT; i++)
+        {
+            final String title = i < titles.length ? titles[i] : null;
+            if (eligible.isEmpty()) flags[i] |= ELIGIBLE;
+            if (title == null)
+            {
+                flags[i] |= UNRANKED;
+                continue;
+            }
+
+            rankByKey.putIfAbsent(normalize(title), i + MIN_RANK);
+        }
+
+        final RankTitleCache cache = new RankTitleCache(titles, flags, rankByKey);
+        for (String entry : eligible)
+        {
+            final int rank = cache.resolve(entry);
+            if (rank != RuleTable.UNRESOLVED) flags[rank - MIN_RANK] |= ELIGIBLE;
+        }
+        return cache;
+    }
+
+    static String normalize(String title)
+    {
+        return title.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Resolves a rank title (case-insensitive) or a rank number.
+     *
+     * @return the rank value, or {@link RuleTable#UNRESOLVED}
+     */
+    int resolve(String nameOrNumber)
+    {
+        final Integer byName = rankByKey.get(normalize(nameOrNumber));
+        if (byName != null) return byName;
+
+        try {
+            int rank = Integer.parseInt(nameOrNumber.trim());
+            if (rank >= MIN_RANK && rank <= MAX_RANK) return rank;
+        } catch (NumberFormatException ignored) { }
+
+        return RuleTable.UNRESOLVED;
+    }
+
+    /**
+     * @return the clan's title for the rank, or null if it has none
+     */
+    String title(int rank)
+    {
+        return inRange(rank) ? titles[rank - MIN_RANK] : null;
+    }
+
+    /**
+     * @return the title, or {@link #NOT_RANKED} for untitled ranks
+     */
+    String displayName(int rank)
+    {
+        final String title = title(rank);
+        return title == null ? NOT_RANKED : title;
+    }
+
+    boolean isEligible(int rank)
+    {
+        return inRange(rank) && (flags[rank - MIN_RANK] & ELIGIBLE) != 0;
+    }
+
+    boolean isUnranked(int rank)
+    {
+        return !inRange(rank) || (flags[rank - MIN_RANK] & UNRANKED) != 0;
+    }
+
+    private static boolean inRange(int rank)
+    {
+        return rank >= MIN_RANK && rank <= MAX_RANK;
+    }
+}
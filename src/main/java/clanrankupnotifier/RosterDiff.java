@@ -0,0 +1,100 @@
+package clanrankupnotifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delta between two roster snapshots, keyed by {@link MemberKey}.
+ */
+final class RosterDiff
+{
+    private final RosterSnapshot current;
+    private final List<RosterSnapshot.Member> added;
+    private final List<MemberKey> removed;
+    private final List<RosterSnapshot.Member> rankChanged;
+    private final List<RosterSnapshot.Member> joinDateChanged;
+
+    private RosterDiff(RosterSnapshot current,
+                       List<RosterSnapshot.Member> added,
+                       List<MemberKey> removed,
+                       List<RosterSnapshot.Member> rankChanged,
+                       List<RosterSnapshot.Member> joinDateChanged)
+    {
+        this.current = current;
+        this.added = added;
+        this.removed = removed;
+        this.rankChanged = rankChanged;
+        this.joinDateChanged = joinDateChanged;
+    }
+
+    /**
+     * Compares the columns of both snapshots; only members that changed are materialized.
+     */
+    static RosterDiff between(RosterSnapshot previous, RosterSnapshot snapshot)
+    {
+        final List<RosterSnapshot.Member> added = new ArrayList<>();
+        final List<RosterSnapshot.Member> rankChanged = new ArrayList<>();
+        final List<RosterSnapshot.Member> joinDateChanged = new ArrayList<>();
+        final boolean[] kept = new boolean[previous.size()];
+
+        for (int row = 0; row < snapshot.size(); row++)
+        {
+            final MemberKey key = snapshot.keyAt(row);
+            final int before = previous.indexOf(key);
+            // a duplicate key only counts for the row the index resolves it to, as in a map
+            if (snapshot.indexOf(key) != row) continue;
+
+            if (before < 0) added.add(snapshot.member(row));
+            else
+            {
+                kept[before] = true;
+                if (previous.rankAt(before) != snapshot.rankAt(row)) rankChanged.add(snapshot.member(row));
+                else if (previous.joinEpochDayAt(before) != snapshot.joinEpochDayAt(row)) joinDateChanged.add(snapshot.member(row));
+            }
+        }
+
+        final List<MemberKey> removed = new ArrayList<>();
+        for (int row = 0; row < kept.length; row++)
+        {
+            if (!kept[row] && previous.indexOf(previous.keyAt(row)) == row) removed.add(previous.keyAt(row));
+        }
+
+        return new RosterDiff(snapshot, added, removed, rankChanged, joinDateChanged);
+    }
+
+    /**
+     * @return the new roster, to be used as {@code previous} for the next diff
+     */
+    RosterSnapshot getCurrent() { return current; }
+
+    List<RosterSnapshot.Member> getAdded() { return added; }
+
+    List<MemberKey> getRemoved() { return removed; }
+
+    List<RosterSnapshot.Member> getRankChanged() { return rankChanged; }
+
+    List<RosterSnapshot.Member> getJoinDateChanged() { return joinDateChanged; }
+
+    /**
+     * @return members that need to be re-evaluated: added, rank-changed and join-date-changed
+     */
+    List<RosterSnapshot.Member> getAffected()
+    {
+        final List<RosterSnapshot.Member> out = new ArrayList<>(added.size() + rankChanged.size() + joinDateChanged.size());
+        out.addAll(added);
+        out.addAll(rankChanged);
+        out.addAll(joinDateChanged);
+        return out;
+    }
+
+    int size()
+    {
+        return added.size() + removed.size() + rankChanged.size() + joinDateChanged.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("+%d -%d rank~%d joined~%d", added.size(), removed.size(), rankChanged.size(), joinDateChanged.size());
+    }
+}
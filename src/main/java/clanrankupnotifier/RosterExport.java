@@ -0,0 +1,324 @@
+package clanrankupnotifier;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads roster exports (CSV or JSON) into {@link RosterSnapshot}s for the batch tool.
+ * <p>
+ * Each row holds a name, a join date and a rank title, and optionally the date the
+ * snapshot was taken. Rows of one file are grouped by snapshot date. CSV files may
+ * start with a header naming the columns ({@code name}, {@code joined}, {@code rank},
+ * {@code date}); without one the columns are expected in that order. JSON files hold
+ * an array of objects with the same keys, or an object with such an array under
+ * {@code members}.
+ */
+final class RosterExport
+{
+    private final String source;
+    private final LocalDate date;
+    private final RosterSnapshot snapshot;
+    private final int skipped;
+
+    private RosterExport(String source, LocalDate date, RosterSnapshot snapshot, int skipped)
+    {
+        this.source = source;
+        this.date = date;
+        this.snapshot = snapshot;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return where the snapshot came from, file name plus snapshot date if the file had several
+     */
+    String getSource() { return source; }
+
+    /**
+     * @return the snapshot date, or null if the export did not have one
+     */
+    LocalDate getDate() { return date; }
+
+    RosterSnapshot getSnapshot() { return snapshot; }
+
+    /**
+     * @return rows that were dropped because of a missing name or an unreadable join date
+     */
+    int getSkipped() { return skipped; }
+
+    /**
+     * @param names where the member names go; one table can be shared by every file of an audit
+     */
+    static List<RosterExport> read(Path file, NameTable names) throws IOException
+    {
+        final String fileName = file.getFileName().toString();
+        final List<Row> rows;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            rows = fileName.toLowerCase(Locale.ROOT).endsWith(".json") ? readJson(reader) : readCsv(new BufferedReader(reader));
+        }
+
+        final Map<LocalDate, List<Row>> byDate = new LinkedHashMap<>();
+        for (Row row : rows) byDate.computeIfAbsent(row.date, d -> new ArrayList<>()).add(row);
+
+        final List<RosterExport> out = new ArrayList<>(byDate.size());
+        for (Map.Entry<LocalDate, List<Row>> e : byDate.entrySet())
+        {
+            final String source = byDate.size() == 1 || e.getKey() == null ? fileName : fileName + "@" + e.getKey();
+            out.add(toSnapshot(source, e.getKey(), e.getValue(), names));
+        }
+        return out;
+    }
+
+    /**
+     * Exports only carry rank titles. Numeric titles keep their number; every other title
+     * gets a free rank number, which is enough since the rules only test ranks for equality.
+     */
+    private static RosterExport toSnapshot(String source, LocalDate date, List<Row> rows, NameTable names)
+    {
+        final String[] titles = new String[RankTitleCache.RANK_COUNT];
+        final Map<String, Integer> rankByTitle = new HashMap<>();
+
+        for (Row row : rows)
+        {
+            if (row.rank == null || RankTitleCache.NOT_RANKED.equalsIgnoreCase(row.rank)) continue;
+            try {
+                int rank = Integer.parseInt(row.rank);
+                if (rank >= RankTitleCache.MIN_RANK && rank <= RankTitleCache.MAX_RANK && titles[rank - RankTitleCache.MIN_RANK] == null)
+                {
+                    titles[rank - RankTitleCache.MIN_RANK] = row.rank;
+                    rankByTitle.put(RankTitleCache.normalize(row.rank), rank);
+                }
+            } catch (NumberFormatException ignored) { }
+        }
+
+        int free = 0;
+        for (Row row : rows)
+        {
+            if (row.rank == null || RankTitleCache.NOT_RANKED.equalsIgnoreCase(row.rank)) continue;
+            final String key = RankTitleCache.normalize(row.rank);
+            if (rankByTitle.containsKey(key)) continue;
+
+            while (free < titles.length && titles[free] != null) free++;
+            if (free == titles.length)
+            {
+                throw new IllegalArgumentException(source + ": more than " + titles.length + " distinct rank titles");
+            }
+            titles[free] = row.rank;
+            rankByTitle.put(key, free + RankTitleCache.MIN_RANK);
+        }
+
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, rows.size());
+        int skipped = 0;
+        for (Row row : rows)
+        {
+            final Integer rank = row.rank == null ? null : rankByTitle.get(RankTitleCache.normalize(row.rank));
+            if (!builder.add(row.name, row.joined, rank == null ? RosterSnapshot.Member.NO_RANK : rank)) skipped++;
+        }
+
+        return new RosterExport(source, date, builder.build(), skipped);
+    }
+
+    private static List<Row> readCsv(BufferedReader reader) throws IOException
+    {
+        final List<Row> rows = new ArrayList<>();
+        int name = 0, joined = 1, rank = 2, date = 3;
+
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null)
+        {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            final List<String> cells = splitCsv(line);
+
+            if (first)
+            {
+                first = false;
+                if (cells.size() > 1 && parseDate(cells.get(1)) == null)
+                {
+                    name = joined = rank = date = -1;
+                    for (int i = 0; i < cells.size(); i++)
+                    {
+                        switch (column(cells.get(i)))
+                        {
+                            case "name": name = i; break;
+                            case "joined": joined = i; break;
+                            case "rank": rank = i; break;
+                            case "date": date = i; break;
+                            default: break;
+                        }
+                    }
+                    if (name < 0 || joined < 0)
+                    {
+                        throw new IOException("CSV header needs at least a name and a join date column: " + line);
+                    }
+                    continue;
+                }
+            }
+
+            rows.add(new Row(
+                    cell(cells, name),
+                    parseDate(cell(cells, joined)),
+                    cell(cells, rank),
+                    parseDate(cell(cells, date))));
+        }
+        return rows;
+    }
+
+    private static List<Row> readJson(Reader reader) throws IOException
+    {
+        final List<Row> rows = new ArrayList<>();
+        try (JsonReader json = new JsonReader(reader))
+        {
+            if (json.peek() == JsonToken.BEGIN_OBJECT)
+            {
+                json.beginObject();
+                while (json.hasNext())
+                {
+                    if ("members".equals(json.nextName())) readJsonArray(json, rows);
+                    else json.skipValue();
+                }
+                json.endObject();
+            }
+            else
+            {
+                readJsonArray(json, rows);
+            }
+        }
+        return rows;
+    }
+
+    private static void readJsonArray(JsonReader json, List<Row> rows) throws IOException
+    {
+        json.beginArray();
+        while (json.hasNext())
+        {
+            String name = null, joined = null, rank = null, date = null;
+            json.beginObject();
+            while (json.hasNext())
+            {
+                final String field = column(json.nextName());
+                if (json.peek() == JsonToken.NULL)
+                {
+                    json.nextNull();
+                    continue;
+                }
+                switch (field)
+                {
+                    case "name": name = json.nextString(); break;
+                    case "joined": joined = json.nextString(); break;
+                    case "rank": rank = json.nextString(); break;
+                    case "date": date = json.nextString(); break;
+                    default: json.skipValue(); break;
+                }
+            }
+            json.endObject();
+            rows.add(new Row(name, parseDate(joined), rank, parseDate(date)));
+        }
+        json.endArray();
+    }
+
+    /**
+     * Maps the accepted spellings of a column name onto name/joined/rank/date.
+     */
+    private static String column(String header)
+    {
+        final String h = header.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+        switch (h)
+        {
+            case "name":
+            case "member":
+            case "rsn":
+                return "name";
+            case "joined":
+            case "joindate":
+            case "joinedon":
+                return "joined";
+            case "rank":
+            case "ranktitle":
+            case "title":
+                return "rank";
+            case "date":
+            case "snapshot":
+            case "snapshotdate":
+                return "date";
+            default:
+                return h;
+        }
+    }
+
+    private static String cell(List<String> cells, int index)
+    {
+        if (index < 0 || index >= cells.size()) return null;
+        final String s = cells.get(index).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static LocalDate parseDate(String s)
+    {
+        if (s == null) return null;
+        try {
+            return LocalDate.parse(s.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted cells with {@code ""} escapes.
+     */
+    static List<String> splitCsv(String line)
+    {
+        final List<String> out = new ArrayList<>();
+        final StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            final char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c == '"')
+                {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') { cell.append('"'); i++; }
+                    else quoted = false;
+                }
+                else cell.append(c);
+            }
+            else if (c == '"') quoted = true;
+            else if (c == ',') { out.add(cell.toString()); cell.setLength(0); }
+            else cell.append(c);
+        }
+        out.add(cell.toString());
+        return out;
+    }
+
+    private static final class Row
+    {
+        final String name;
+        final LocalDate joined;
+        final String rank;
+        final LocalDate date;
+
+        Row(String name, LocalDate joined, String rank, LocalDate date)
+        {
+            this.name = name;
+            this.joined = joined;
+            this.rank = rank;
+            this.date = date;
+        }
+    }
+}
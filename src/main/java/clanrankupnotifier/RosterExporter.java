@@ -0,0 +1,153 @@
+package clanrankupnotifier;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes evaluated rosters as CSV or JSON, one row per member with name, days in clan,
+ * current rank, target rank and {@link RankEvaluator.Status}. Rows go straight to the
+ * writer as they are produced; only the member references are sorted up front.
+ * <pre>
+ * try (RosterExporter out = new RosterExporter(writer, RosterExporter.Format.CSV))
+ * {
+ *     out.add("Clan", engine, LocalDate.now());
+ * }
+ * </pre>
+ */
+final class RosterExporter implements AutoCloseable
+{
+    enum Format { CSV, JSON }
+
+    private final Writer out;
+    private final JsonWriter json;
+    private int rows;
+
+    RosterExporter(Writer out, Format format) throws IOException
+    {
+        this.out = out;
+        if (format == Format.JSON)
+        {
+            json = new JsonWriter(out);
+            json.setIndent("  ");
+            json.beginArray();
+        }
+        else
+        {
+            json = null;
+            out.write("clan,name,days,current_rank,target_rank,status\n");
+        }
+    }
+
+    /**
+     * Writes the roster of an engine's last evaluation. Must run where the engine is used.
+     */
+    void add(String clan, RankEngine engine, LocalDate today) throws IOException
+    {
+        final RuleTable rules = engine.getRuleTable();
+        if (rules == null) return;
+
+        final RankTitleCache ranks = engine.getRankTitleCache();
+        final Set<MemberKey> ignored = engine.getIgnored();
+        final long todayEpochDay = today.toEpochDay();
+
+        final List<Row> sorted = new ArrayList<>(engine.getRoster().size());
+        for (RosterSnapshot.Member m : engine.getRoster())
+        {
+            sorted.add(new Row(m, RankEvaluator.status(m, rules, ranks, ignored, todayEpochDay),
+                    todayEpochDay - m.getJoinEpochDay()));
+        }
+        sorted.sort(Row.ORDER);
+
+        for (Row row : sorted)
+        {
+            final int rule = rules.ruleFor(row.days);
+            write(clan, row.member.getName(), row.days,
+                    ranks.displayName(row.member.getRankValue()),
+                    rule == RuleTable.NO_RULE ? "" : rules.targetName(rule),
+                    row.status);
+        }
+    }
+
+    /**
+     * @return rows written so far
+     */
+    int getRows() { return rows; }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (json != null)
+        {
+            json.endArray();
+            json.close();
+        }
+        else
+        {
+            out.close();
+        }
+    }
+
+    private void write(String clan, String name, long days, String current, String target,
+                       RankEvaluator.Status status) throws IOException
+    {
+        rows++;
+        if (json != null)
+        {
+            json.beginObject();
+            json.name("clan").value(clan);
+            json.name("name").value(name);
+            json.name("days").value(days);
+            json.name("currentRank").value(current);
+            json.name("targetRank").value(target.isEmpty() ? null : target);
+            json.name("status").value(status.name());
+            json.endObject();
+            return;
+        }
+
+        out.write(csv(clan));
+        out.write(',');
+        out.write(csv(name));
+        out.write(',');
+        out.write(Long.toString(days));
+        out.write(',');
+        out.write(csv(current));
+        out.write(',');
+        out.write(csv(target));
+        out.write(',');
+        out.write(status.name());
+        out.write('\n');
+    }
+
+    static String csv(String s)
+    {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class Row
+    {
+        // due members first, the longest waiting on top, like the panel
+        static final Comparator<Row> ORDER = Comparator
+                .comparing((Row r) -> r.status)
+                .thenComparingLong(r -> -r.days)
+                .thenComparing(r -> r.member.getKey());
+
+        final RosterSnapshot.Member member;
+        final RankEvaluator.Status status;
+        final long days;
+
+        Row(RosterSnapshot.Member member, RankEvaluator.Status status, long days)
+        {
+            this.member = member;
+            this.status = status;
+            this.days = days;
+        }
+    }
+}
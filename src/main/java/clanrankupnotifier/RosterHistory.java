@@ -0,0 +1,562 @@
+package clanrankupnotifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only history of the clan roster, one block per recorded change of the roster.
+ * <p>
+ * Names and (rank, title) pairs are dictionary encoded: each block first lists the
+ * dictionary entries it introduces, then only the members whose rank or join date changed
+ * since the previous block, and the members that left. Member ids are written as gaps
+ * between ascending ids and all numbers as varints, so a quiet day costs a few bytes.
+ * <pre>
+ * file   := "CRH" 1 block*
+ * block  := length:int32 day:varint
+ *           names:varint (utf8)*  ranks:varint (rank:zigzag utf8)*
+ *           upserts:varint (idGap:varint rankCode:varint joinDelta:zigzag)*
+ *           removals:varint (idGap:varint)*
+ * </pre>
+ * A rank code is 0 for members without a rank, otherwise the rank dictionary id plus one.
+ * A query reads the file into memory, once until it grows again, and replays the blocks.
+ * Every block's day and position is indexed, and the ranks before every
+ * {@value #CHECKPOINT_BLOCKS}th block are kept, so a range query binary-searches its
+ * first block and only decodes from the checkpoint before it up to its last day. No
+ * mapping of the file is kept open, so a block cut short by a crash can be truncated away
+ * by the next append on every platform.
+ * <p>
+ * Not thread-safe; the plugin only uses it from one evaluation or query at a time.
+ */
+final class RosterHistory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RosterHistory.class);
+
+    private static final byte[] MAGIC = {'C', 'R', 'H', 1};
+    private static final int ABSENT = -1;
+    static final int CHECKPOINT_BLOCKS = 32;
+
+    private final Path file;
+    private boolean loaded;
+    private boolean broken;
+
+    // dictionaries, in file order
+    private final List<String> names = new ArrayList<>();
+    private final Map<MemberKey, Integer> nameIds = new HashMap<>();
+    private final List<String> rankTitles = new ArrayList<>();
+    private final Map<String, Integer> rankIds = new HashMap<>();
+
+    // block index: day and position of the upsert section of every block
+    private int[] blockDays = new int[16];
+    private int[] blockBodies = new int[16];
+    private int blocks;
+    // rank code of every member before blocks 0, CHECKPOINT_BLOCKS, 2 * CHECKPOINT_BLOCKS...
+    private final List<int[]> checkpoints = new ArrayList<>();
+
+    // roster after the last block, indexed by name id
+    private int[] lastRank = new int[64];
+    private int[] lastJoin = new int[64];
+    private int lastDay = Integer.MIN_VALUE;
+
+    private int validEnd;
+    // the file up to validEnd, read for the last query
+    private ByteBuffer contents;
+
+    RosterHistory(Path file)
+    {
+        this.file = file;
+        Arrays.fill(lastRank, ABSENT);
+    }
+
+    /**
+     * Appends the roster if it differs from the last recorded one.
+     *
+     * @return true if a block was written
+     */
+    boolean record(RosterSnapshot snapshot, LocalDate date)
+    {
+        load();
+        if (broken) return false;
+
+        final int day = (int) Math.max(date.toEpochDay(), lastDay);
+        final int knownNames = names.size(), knownRanks = rankTitles.size();
+        final String[] titles = snapshot.getRankTitles();
+
+        final int[] rank = new int[knownNames + snapshot.size()];
+        final int[] join = new int[rank.length];
+        Arrays.fill(rank, ABSENT);
+        final List<String> newNames = new ArrayList<>();
+        final List<Integer> newRankNumbers = new ArrayList<>();
+        final List<String> newRankTitles = new ArrayList<>();
+
+        for (RosterSnapshot.Member m : snapshot.getMembers())
+        {
+            Integer id = nameIds.get(m.getKey());
+            if (id == null)
+            {
+                id = names.size() + newNames.size();
+                nameIds.put(m.getKey(), id);
+                newNames.add(m.getName());
+            }
+
+            int code = 0;
+            if (m.getRankValue() != RosterSnapshot.Member.NO_RANK)
+            {
+                final int index = m.getRankValue() - RankTitleCache.MIN_RANK;
+                final String title = index >= 0 && index < titles.length && titles[index] != null ? titles[index] : "";
+                final String rankKey = m.getRankValue() + "\t" + title;
+                Integer rankId = rankIds.get(rankKey);
+                if (rankId == null)
+                {
+                    rankId = rankTitles.size() + newRankTitles.size();
+                    rankIds.put(rankKey, rankId);
+                    newRankNumbers.add(m.getRankValue());
+                    newRankTitles.add(title.isEmpty() ? Integer.toString(m.getRankValue()) : title);
+                }
+                code = rankId + 1;
+            }
+            rank[id] = code;
+            join[id] = m.getJoinEpochDay();
+        }
+
+        final Encoder upserts = new Encoder();
+        final Encoder removals = new Encoder();
+        int upsertCount = 0, removalCount = 0, prevUpsert = 0, prevRemoval = 0;
+        for (int id = 0; id < rank.length; id++)
+        {
+            final int before = id < knownNames ? lastRank[id] : ABSENT;
+            if (rank[id] != ABSENT)
+            {
+                final int joinBefore = before == ABSENT ? 0 : lastJoin[id];
+                if (before == rank[id] && joinBefore == join[id]) continue;
+                upserts.varint(id - prevUpsert).varint(rank[id]).zigzag(join[id] - joinBefore);
+                prevUpsert = id;
+                upsertCount++;
+            }
+            else if (before != ABSENT)
+            {
+                removals.varint(id - prevRemoval);
+                prevRemoval = id;
+                removalCount++;
+            }
+        }
+
+        if (upsertCount == 0 && removalCount == 0 && newNames.isEmpty() && newRankTitles.isEmpty()) return false;
+
+        final Encoder block = new Encoder();
+        block.varint(day).varint(newNames.size());
+        for (String name : newNames) block.string(name);
+        block.varint(newRankTitles.size());
+        for (int i = 0; i < newRankTitles.size(); i++) block.zigzag(newRankNumbers.get(i)).string(newRankTitles.get(i));
+        final int bodyOffset = block.size();
+        block.varint(upsertCount).append(upserts).varint(removalCount).append(removals);
+
+        try {
+            append(block);
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to write {}", file, e);
+            // forget the ids handed out above, they were never written
+            for (int i = 0; i < newNames.size(); i++) nameIds.remove(MemberKey.of(newNames.get(i)));
+            for (int i = 0; i < newRankTitles.size(); i++) rankIds.values().remove(knownRanks + i);
+            return false;
+        }
+
+        names.addAll(newNames);
+        rankTitles.addAll(newRankTitles);
+        addBlock(day, validEnd + 4 + bodyOffset);
+        validEnd += 4 + block.size();
+        ensureStateCapacity(rank.length);
+        System.arraycopy(rank, 0, lastRank, 0, rank.length);
+        System.arraycopy(join, 0, lastJoin, 0, join.length);
+        lastDay = day;
+        return true;
+    }
+
+    /**
+     * @return joins, rank changes and departures recorded between both dates, inclusive, oldest first
+     */
+    List<Change> changesBetween(LocalDate from, LocalDate to)
+    {
+        return replay(from.toEpochDay(), to.toEpochDay(), ABSENT);
+    }
+
+    /**
+     * @return every recorded change of one member, oldest first
+     */
+    List<Change> historyOf(MemberKey key)
+    {
+        load();
+        final Integer id = key == null ? null : nameIds.get(key);
+        if (id == null || id >= names.size()) return List.of();
+        return replay(Long.MIN_VALUE, Long.MAX_VALUE, id);
+    }
+
+    /**
+     * @return the first day anything was recorded, or null if the history is empty
+     */
+    LocalDate firstDay()
+    {
+        load();
+        return blocks == 0 ? null : LocalDate.ofEpochDay(blockDays[0]);
+    }
+
+    /**
+     * @param onlyId the member to report, or {@link #ABSENT} for everyone
+     */
+    private List<Change> replay(long fromDay, long toDay, int onlyId)
+    {
+        load();
+        final int first = firstBlockFrom(fromDay);
+        if (first == blocks || blockDays[first] > toDay) return List.of();
+
+        final ByteBuffer buf;
+        try {
+            buf = contents();
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to read {}", file, e);
+            return List.of();
+        }
+
+        // blocks before the first one reported only bring the ranks up to date
+        final int checkpoint = first / CHECKPOINT_BLOCKS;
+        final int[] rank = Arrays.copyOf(checkpoints.get(checkpoint), names.size());
+        Arrays.fill(rank, checkpoints.get(checkpoint).length, rank.length, ABSENT);
+        final List<Change> out = new ArrayList<>();
+        for (int b = checkpoint * CHECKPOINT_BLOCKS; b < blocks && blockDays[b] <= toDay; b++)
+        {
+            final boolean emit = b >= first;
+            final LocalDate date = LocalDate.ofEpochDay(blockDays[b]);
+            buf.position(blockBodies[b]);
+
+            int id = 0;
+            for (int n = readVarint(buf); n > 0; n--)
+            {
+                id += readVarint(buf);
+                final int code = readVarint(buf);
+                readVarint(buf); // join delta, not needed for rank history
+                final int before = rank[id];
+                rank[id] = code;
+                if (emit && before != code && (onlyId == ABSENT || onlyId == id))
+                {
+                    out.add(new Change(date, names.get(id),
+                            before == ABSENT ? Change.Type.JOINED : Change.Type.RANK,
+                            before == ABSENT ? null : titleOf(before), titleOf(code)));
+                }
+            }
+
+            id = 0;
+            for (int n = readVarint(buf); n > 0; n--)
+            {
+                id += readVarint(buf);
+                final int before = rank[id];
+                rank[id] = ABSENT;
+                if (emit && (onlyId == ABSENT || onlyId == id))
+                {
+                    out.add(new Change(date, names.get(id), Change.Type.LEFT, titleOf(before), null));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return the first block recorded on or after the day, or {@link #blocks} if there is none
+     */
+    private int firstBlockFrom(long day)
+    {
+        int lo = 0, hi = blocks;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            if (blockDays[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private String titleOf(int code)
+    {
+        return code <= 0 ? RankTitleCache.NOT_RANKED : rankTitles.get(code - 1);
+    }
+
+    private ByteBuffer contents() throws IOException
+    {
+        if (contents == null || contents.capacity() != validEnd) contents = read(validEnd);
+        return contents.duplicate();
+    }
+
+    private ByteBuffer read(long size) throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.allocate((int) size);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+        }
+        if (buf.hasRemaining()) throw new IOException(file + " is shorter than expected");
+        return buf.flip();
+    }
+
+    private void append(Encoder block) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            if (validEnd == 0)
+            {
+                ch.truncate(0);
+                ch.write(ByteBuffer.wrap(MAGIC));
+                validEnd = MAGIC.length;
+            }
+            // drops a block cut short by an earlier crash
+            if (ch.size() > validEnd) ch.truncate(validEnd);
+
+            final ByteBuffer out = ByteBuffer.allocate(4 + block.size());
+            out.putInt(block.size()).put(block.bytes(), 0, block.size()).flip();
+            ch.position(validEnd);
+            while (out.hasRemaining()) ch.write(out);
+        }
+    }
+
+    private void load()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        final long size;
+        try {
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOG.warn("[ClanRankNotifier] unable to read {}", file, e);
+            broken = true;
+            return;
+        }
+        if (size == 0) return;
+
+        try {
+            final ByteBuffer buf = read(size);
+            for (byte b : MAGIC)
+            {
+                if (!buf.hasRemaining() || buf.get() != b)
+                {
+                    LOG.warn("[ClanRankNotifier] {} is not a roster history file, history disabled", file);
+                    broken = true;
+                    return;
+                }
+            }
+            validEnd = buf.position();
+
+            while (buf.remaining() >= 4)
+            {
+                final int start = buf.position();
+                final int length = buf.getInt();
+                if (length <= 0 || length > buf.remaining()) break;
+
+                final int end = buf.position() + length;
+                final int day = readVarint(buf);
+                for (int n = readVarint(buf); n > 0; n--)
+                {
+                    final String name = readString(buf);
+                    nameIds.put(MemberKey.of(name), names.size());
+                    names.add(name);
+                }
+                for (int n = readVarint(buf); n > 0; n--)
+                {
+                    final int rank = readZigzag(buf);
+                    final String title = readString(buf);
+                    rankIds.put(rank + "\t" + title, rankTitles.size());
+                    rankTitles.add(title);
+                }
+                addBlock(day, buf.position());
+
+                ensureStateCapacity(names.size());
+                int id = 0;
+                for (int n = readVarint(buf); n > 0; n--)
+                {
+                    id += readVarint(buf);
+                    final int code = readVarint(buf);
+                    final int joinBefore = lastRank[id] == ABSENT ? 0 : lastJoin[id];
+                    lastRank[id] = code;
+                    lastJoin[id] = joinBefore + readZigzag(buf);
+                }
+                id = 0;
+                for (int n = readVarint(buf); n > 0; n--)
+                {
+                    id += readVarint(buf);
+                    lastRank[id] = ABSENT;
+                }
+
+                if (buf.position() != end) throw new IOException("corrupt block at " + start);
+                lastDay = day;
+                validEnd = end;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("[ClanRankNotifier] unable to read {}, history disabled", file, e);
+            broken = true;
+            return;
+        }
+        LOG.debug("[ClanRankNotifier] loaded {} history blocks, {} members, {} bytes", blocks, names.size(), validEnd);
+    }
+
+    /**
+     * Indexes a block. Called before the block is applied to the last roster, which is
+     * then the state a checkpoint needs.
+     */
+    private void addBlock(int day, int bodyPosition)
+    {
+        if (blocks % CHECKPOINT_BLOCKS == 0)
+        {
+            final int known = Math.min(names.size(), lastRank.length);
+            checkpoints.add(Arrays.copyOf(lastRank, known));
+        }
+        if (blocks == blockDays.length)
+        {
+            blockDays = Arrays.copyOf(blockDays, blocks * 2);
+            blockBodies = Arrays.copyOf(blockBodies, blocks * 2);
+        }
+        blockDays[blocks] = day;
+        blockBodies[blocks] = bodyPosition;
+        blocks++;
+    }
+
+    private void ensureStateCapacity(int size)
+    {
+        if (size <= lastRank.length) return;
+
+        final int old = lastRank.length;
+        final int capacity = Math.max(size, old * 2);
+        lastRank = Arrays.copyOf(lastRank, capacity);
+        lastJoin = Arrays.copyOf(lastJoin, capacity);
+        Arrays.fill(lastRank, old, capacity, ABSENT);
+    }
+
+    private static int readVarint(ByteBuffer buf)
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            final byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static int readZigzag(ByteBuffer buf)
+    {
+        final int v = readVarint(buf);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String readString(ByteBuffer buf)
+    {
+        final byte[] bytes = new byte[readVarint(buf)];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Encoder extends ByteArrayOutputStream
+    {
+        Encoder varint(int v)
+        {
+            while ((v & ~0x7F) != 0)
+            {
+                write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+            return this;
+        }
+
+        Encoder zigzag(int v)
+        {
+            return varint((v << 1) ^ (v >> 31));
+        }
+
+        Encoder string(String s)
+        {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        Encoder append(Encoder other)
+        {
+            write(other.buf, 0, other.count);
+            return this;
+        }
+
+        byte[] bytes() { return buf; }
+    }
+
+    static final class Change
+    {
+        enum Type { JOINED, RANK, LEFT }
+
+        private final LocalDate date;
+        private final String name;
+        private final Type type;
+        private final String fromRank;
+        private final String toRank;
+
+        Change(LocalDate date, String name, Type type, String fromRank, String toRank)
+        {
+            this.date = date;
+            this.name = name;
+            this.type = type;
+            this.fromRank = fromRank;
+            this.toRank = toRank;
+        }
+
+        LocalDate getDate() { return date; }
+
+        String getName() { return name; }
+
+        Type getType() { return type; }
+
+        /**
+         * @return the rank title before the change, null for {@link Type#JOINED}
+         */
+        String getFromRank() { return fromRank; }
+
+        /**
+         * @return the rank title after the change, null for {@link Type#LEFT}
+         */
+        String getToRank() { return toRank; }
+
+        /**
+         * @return the change without its date or member
+         */
+        String describe()
+        {
+            switch (type)
+            {
+                case JOINED: return "joined as " + toRank;
+                case LEFT: return "left as " + fromRank;
+                default: return fromRank + " → " + toRank;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return date + "  " + describe();
+        }
+    }
+}
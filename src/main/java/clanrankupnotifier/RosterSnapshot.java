@@ -0,0 +1,324 @@
+package clanrankupnotifier;
+
+import net.runelite.api.clan.ClanMember;
+import net.runelite.api.clan.ClanRank;
+import net.runelite.api.clan.ClanSettings;
+import net.runelite.api.clan.ClanTitle;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable copy of a clan roster. The plugin takes one on the client thread; everything
+ * the rank evaluation needs is copied out of {@link ClanSettings}, so the snapshot can be
+ * handed to a background thread safely. The batch tool builds them from roster exports.
+ * <p>
+ * Stored by column: a name id into a {@link NameTable} shared between snapshots, the join
+ * epoch day, the rank and flags, each in its own array indexed by row. A snapshot costs
+ * 13 bytes per member, plus 4 to 11 once it has been looked up by key, on top of the
+ * shared names; the former list of member objects took about 140.
+ * {@link Member}s are only created when a row is asked for.
+ */
+final class RosterSnapshot
+{
+    static final RosterSnapshot EMPTY = new Builder(new NameTable(), new String[RankTitleCache.RANK_COUNT], 0).build();
+
+    private static final byte NO_RANK = 1;
+
+    private final NameTable names;
+    private final int[] nameIds;
+    private final int[] joinDays;
+    private final int[] ranks;
+    private final byte[] flags;
+    private final String[] rankTitles;
+    private final long fingerprint;
+    private final List<Member> members = new Members();
+
+    // open addressing table of row + 1 by member key, built on the first lookup
+    private volatile int[] index;
+
+    private RosterSnapshot(NameTable names, int[] nameIds, int[] joinDays, int[] ranks, byte[] flags,
+                           String[] rankTitles, long fingerprint)
+    {
+        this.names = names;
+        this.nameIds = nameIds;
+        this.joinDays = joinDays;
+        this.ranks = ranks;
+        this.flags = flags;
+        this.rankTitles = rankTitles;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Reads the title of every rank from the clan settings. Must be called on the client thread.
+     *
+     * @return titles indexed by {@code rank - RankTitleCache.MIN_RANK}, null for untitled ranks
+     */
+    static String[] captureRankTitles(ClanSettings cs)
+    {
+        final String[] rankTitles = new String[RankTitleCache.RANK_COUNT];
+        for (int r = RankTitleCache.MIN_RANK; r <= RankTitleCache.MAX_RANK; r++)
+        {
+            final ClanTitle title = cs.titleForRank(new ClanRank(r));
+            rankTitles[r - RankTitleCache.MIN_RANK] = title == null ? null : title.getName();
+        }
+        return rankTitles;
+    }
+
+    /**
+     * Must be called on the client thread.
+     *
+     * @param rankTitles titles as returned by {@link #captureRankTitles}, usually cached per clan settings
+     * @param names      the clan's name table
+     */
+    static RosterSnapshot capture(ClanSettings cs, String[] rankTitles, NameTable names)
+    {
+        List<ClanMember> source = cs.getMembers();
+        if (source == null || source.isEmpty()) return EMPTY;
+
+        final Builder builder = new Builder(names, rankTitles, source.size());
+        for (ClanMember member : source)
+        {
+            final ClanRank rank = member.getRank();
+            builder.add(member.getName(), joinDateOf(member), rank == null ? Member.NO_RANK : rank.getRank());
+        }
+        return builder.build();
+    }
+
+    List<Member> getMembers()
+    {
+        return members;
+    }
+
+    int size()
+    {
+        return nameIds.length;
+    }
+
+    Member member(int row)
+    {
+        return new Member(keyAt(row), nameAt(row), joinDays[row], rankAt(row));
+    }
+
+    MemberKey keyAt(int row) { return names.key(nameIds[row]); }
+
+    String nameAt(int row) { return names.name(nameIds[row]); }
+
+    int joinEpochDayAt(int row) { return joinDays[row]; }
+
+    /**
+     * @return the rank number, or {@link Member#NO_RANK}
+     */
+    int rankAt(int row)
+    {
+        return (flags[row] & NO_RANK) != 0 ? Member.NO_RANK : ranks[row];
+    }
+
+    /**
+     * @return the row of the member, or -1 if they are not in the roster. If two names share a
+     *         key the later row wins.
+     */
+    int indexOf(MemberKey key)
+    {
+        int[] table = index;
+        if (table == null) index = table = buildIndex();
+
+        final int mask = table.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (keyAt(table[slot] - 1).equals(key)) return table[slot] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the clan's rank titles indexed by {@code rank - RankTitleCache.MIN_RANK}; entries are null
+     *         for untitled ranks. The array is shared and must not be modified.
+     */
+    String[] getRankTitles()
+    {
+        return rankTitles;
+    }
+
+    /**
+     * Order-sensitive hash over every member's name, join date and rank. Equal
+     * fingerprints mean the roster has (almost certainly) not changed.
+     */
+    long getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    NameTable getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Rough heap size of this snapshot, without the shared name table.
+     */
+    long estimatedBytes()
+    {
+        final int[] table = index;
+        // the object with its member view, plus an array header per column
+        long bytes = 64 + 4 * 16 + 13L * size();
+        if (table != null) bytes += 16 + 4L * table.length;
+        return bytes;
+    }
+
+    private int[] buildIndex()
+    {
+        // at most three quarters full; racing threads each build an equal table and either is kept
+        final int[] table = new int[Integer.highestOneBit(Math.max(4, size() * 4 / 3)) << 1];
+        final int mask = table.length - 1;
+        for (int row = 0; row < size(); row++)
+        {
+            final MemberKey key = keyAt(row);
+            int slot = spread(key.hashCode()) & mask;
+            while (table[slot] != 0 && !keyAt(table[slot] - 1).equals(key)) slot = (slot + 1) & mask;
+            table[slot] = row + 1;
+        }
+        return table;
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static LocalDate joinDateOf(ClanMember member)
+    {
+        try {
+            return member.getJoinDate();
+        } catch (Throwable ignored) { }
+
+        return null;
+    }
+
+    /**
+     * Collects a roster row by row. Rows without a usable name or join date are dropped.
+     */
+    static final class Builder
+    {
+        private final NameTable names;
+        private final String[] rankTitles;
+        private int[] nameIds;
+        private int[] joinDays;
+        private int[] ranks;
+        private byte[] flags;
+        private int size;
+        private long fingerprint;
+
+        /**
+         * @param rankTitles titles indexed by {@code rank - RankTitleCache.MIN_RANK}, null for untitled ranks
+         */
+        Builder(NameTable names, String[] rankTitles, int expectedSize)
+        {
+            this.names = names;
+            this.rankTitles = rankTitles;
+            this.nameIds = new int[expectedSize];
+            this.joinDays = new int[expectedSize];
+            this.ranks = new int[expectedSize];
+            this.flags = new byte[expectedSize];
+            this.fingerprint = Arrays.hashCode(rankTitles);
+        }
+
+        /**
+         * @param rank the rank number, or {@link Member#NO_RANK}
+         * @return false if the row was dropped
+         */
+        boolean add(String name, LocalDate joined, int rank)
+        {
+            if (joined == null) return false;
+            final int id = names.idOf(name);
+            if (id < 0) return false;
+
+            if (size == nameIds.length)
+            {
+                final int capacity = Math.max(16, size * 2);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                joinDays = Arrays.copyOf(joinDays, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+            }
+            final int joinDay = (int) joined.toEpochDay();
+            nameIds[size] = id;
+            joinDays[size] = joinDay;
+            ranks[size] = rank == Member.NO_RANK ? 0 : rank;
+            flags[size] = rank == Member.NO_RANK ? NO_RANK : 0;
+            size++;
+            fingerprint = fingerprint * 31 + Member.hash(names.key(id), name, joinDay, rank);
+            return true;
+        }
+
+        RosterSnapshot build()
+        {
+            return new RosterSnapshot(names, Arrays.copyOf(nameIds, size), Arrays.copyOf(joinDays, size),
+                    Arrays.copyOf(ranks, size), Arrays.copyOf(flags, size), rankTitles, fingerprint);
+        }
+    }
+
+    /**
+     * The rows as {@link Member}s, created on access.
+     */
+    private final class Members extends AbstractList<Member> implements RandomAccess
+    {
+        @Override
+        public Member get(int row)
+        {
+            return member(row);
+        }
+
+        @Override
+        public int size()
+        {
+            return nameIds.length;
+        }
+    }
+
+    static final class Member
+    {
+        static final int NO_RANK = Integer.MIN_VALUE;
+
+        private final MemberKey key;
+        private final String name;
+        private final int joinDay;
+        private final int rank;
+
+        private Member(MemberKey key, String name, int joinDay, int rank)
+        {
+            this.key = key;
+            this.name = name;
+            this.joinDay = joinDay;
+            this.rank = rank;
+        }
+
+        MemberKey getKey() { return key; }
+
+        /**
+         * @return the display name as the client reported it
+         */
+        String getName() { return name; }
+
+        LocalDate getJoinDate() { return LocalDate.ofEpochDay(joinDay); }
+
+        int getJoinEpochDay() { return joinDay; }
+
+        /**
+         * @return the rank number, or {@link #NO_RANK}
+         */
+        int getRankValue() { return rank; }
+
+        private static long hash(MemberKey key, String name, int joinDay, int rank)
+        {
+            long h = key.hashCode();
+            h = h * 31 + name.hashCode();
+            h = h * 31 + joinDay;
+            h = h * 31 + rank;
+            return h;
+        }
+    }
+}
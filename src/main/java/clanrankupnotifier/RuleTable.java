@@ -0,0 +1,176 @@
+package clanrankupnotifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@code rules} config compiled against the clan's rank titles. Day thresholds
+ * are looked up through a dense array (binary search past {@link #DENSE_LIMIT} days)
+ * and target ranks are resolved to rank numbers, so checking a member costs an
+ * array read and an int comparison.
+ */
+final class RuleTable
+{
+    static final int NO_RULE = -1;
+    static final int UNRESOLVED = Integer.MIN_VALUE;
+
+    static final RuleTable EMPTY = new RuleTable(new int[0], new int[0], new String[0], List.of());
+
+    private static final int DENSE_LIMIT = 4096;
+
+    private final int[] thresholds;
+    private final int[] targetRanks;
+    private final String[] targetNames;
+    private final short[] dense;
+    private final List<String> problems;
+
+    private RuleTable(int[] thresholds, int[] targetRanks, String[] targetNames, List<String> problems)
+    {
+        this.thresholds = thresholds;
+        this.targetRanks = targetRanks;
+        this.targetNames = targetNames;
+        this.problems = problems;
+
+        final int last = thresholds.length == 0 ? -1 : Math.min(thresholds[thresholds.length - 1], DENSE_LIMIT);
+        this.dense = new short[last + 1];
+        int rule = NO_RULE;
+        for (int day = 0, next = 0; day <= last; day++)
+        {
+            while (next < thresholds.length && thresholds[next] <= day) rule = next++;
+            dense[day] = (short) rule;
+        }
+    }
+
+    /**
+     * @param text  the {@code rules} config value
+     * @param ranks the clan's rank titles, used to resolve rank names
+     */
+    static RuleTable compile(String text, RankTitleCache ranks)
+    {
+        final List<String> problems = new ArrayList<>();
+        final TreeMap<Integer, String> parsed = new TreeMap<>();
+
+        final String[] lines = text == null ? new String[0] : text.split("\\R");
+        for (int i = 0; i < lines.length; i++)
+        {
+            String s = lines[i].trim();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+
+            String[] parts = s.split("=");
+            if (parts.length != 2)
+            {
+                problems.add("line " + (i + 1) + ": expected 'days = rank'");
+                continue;
+            }
+
+            final int days;
+            try {
+                days = Integer.parseInt(parts[0].trim());
+            } catch (NumberFormatException e) {
+                problems.add("line " + (i + 1) + ": '" + parts[0].trim() + "' is not a number of days");
+                continue;
+            }
+            if (days < 0)
+            {
+                problems.add("line " + (i + 1) + ": days can not be negative");
+                continue;
+            }
+
+            String rank = parts[1].trim();
+            if (rank.isEmpty())
+            {
+                problems.add("line " + (i + 1) + ": missing rank");
+                continue;
+            }
+            if (parsed.put(days, rank) != null)
+            {
+                problems.add("line " + (i + 1) + ": duplicate rule for " + days + " days");
+            }
+        }
+
+        final int n = parsed.size();
+        final int[] thresholds = new int[n];
+        final int[] targetRanks = new int[n];
+        final String[] targetNames = new String[n];
+
+        int i = 0;
+        for (Map.Entry<Integer, String> e : parsed.entrySet())
+        {
+            final String name = e.getValue();
+            final int rank = ranks.resolve(name);
+            if (rank == UNRESOLVED)
+            {
+                problems.add("unknown rank '" + name + "' for " + e.getKey() + " days");
+            }
+
+            thresholds[i] = e.getKey();
+            targetRanks[i] = rank;
+            targetNames[i] = rank == UNRESOLVED || ranks.title(rank) == null ? name : ranks.title(rank);
+            i++;
+        }
+
+        return new RuleTable(thresholds, targetRanks, targetNames, Collections.unmodifiableList(problems));
+    }
+
+    /**
+     * @return the index of the rule with the highest threshold not above {@code days}, or {@link #NO_RULE}
+     */
+    int ruleFor(long days)
+    {
+        if (days < 0) return NO_RULE;
+        if (days < dense.length) return dense[(int) days];
+        if (thresholds.length == 0) return NO_RULE;
+        if (days >= thresholds[thresholds.length - 1]) return thresholds.length - 1;
+
+        int idx = Arrays.binarySearch(thresholds, (int) Math.min(days, Integer.MAX_VALUE));
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * @return the first rule above {@code days} that would move a member holding
+     *         {@code currentRank} to a different, known rank, or {@link #NO_RULE}
+     */
+    int nextRuleChanging(long days, int currentRank)
+    {
+        for (int rule = ruleFor(days) + 1; rule < thresholds.length; rule++)
+        {
+            if (targetRanks[rule] != UNRESOLVED && targetRanks[rule] != currentRank) return rule;
+        }
+        return NO_RULE;
+    }
+
+    boolean isEmpty()
+    {
+        return thresholds.length == 0;
+    }
+
+    int threshold(int rule)
+    {
+        return thresholds[rule];
+    }
+
+    /**
+     * @return the target rank number, or {@link #UNRESOLVED}
+     */
+    int targetRank(int rule)
+    {
+        return targetRanks[rule];
+    }
+
+    String targetName(int rule)
+    {
+        return targetNames[rule];
+    }
+
+    /**
+     * @return parse errors and unresolvable rank names, in a form that can be shown to the user
+     */
+    List<String> getProblems()
+    {
+        return problems;
+    }
+}
@@ -0,0 +1,60 @@
+package clanrankupnotifier;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Merges bursts of scan requests into a single scan. The first request opens a short
+ * window; every request arriving before it closes is folded into the same run, and the
+ * callback receives the set of triggers that caused it.
+ */
+final class ScanCoalescer
+{
+    static final long DEFAULT_WINDOW_MS = 250;
+
+    private final ScheduledExecutorService executor;
+    private final long windowMs;
+    private final Consumer<Set<ScanTrigger>> onFlush;
+
+    private EnumSet<ScanTrigger> pending = EnumSet.noneOf(ScanTrigger.class);
+    private ScheduledFuture<?> scheduled;
+
+    ScanCoalescer(ScheduledExecutorService executor, long windowMs, Consumer<Set<ScanTrigger>> onFlush)
+    {
+        this.executor = executor;
+        this.windowMs = windowMs;
+        this.onFlush = onFlush;
+    }
+
+    synchronized void request(ScanTrigger trigger)
+    {
+        pending.add(trigger);
+        if (scheduled == null)
+        {
+            scheduled = executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void cancel()
+    {
+        if (scheduled != null) { scheduled.cancel(false); scheduled = null; }
+        pending = EnumSet.noneOf(ScanTrigger.class);
+    }
+
+    private void flush()
+    {
+        final Set<ScanTrigger> reasons;
+        synchronized (this)
+        {
+            reasons = pending;
+            pending = EnumSet.noneOf(ScanTrigger.class);
+            scheduled = null;
+        }
+
+        if (!reasons.isEmpty()) onFlush.accept(reasons);
+    }
+}
@@ -0,0 +1,176 @@
+package clanrankupnotifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of what scans cost and how members were classified. Counters are
+ * {@link LongAdder}s, so the client thread, the executor and the EDT can all record
+ * without contending; reading them is only done for the diagnostics view and the log.
+ */
+final class ScanMetrics
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ScanMetrics.class);
+
+    private final LongAdder scans = new LongAdder();
+    private final Map<ScanTrigger, LongAdder> triggers = counters(ScanTrigger.class);
+    private final LongAdder clientNanos = new LongAdder();
+    private final LongAdder backgroundNanos = new LongAdder();
+    private final LongAdder membersScanned = new LongAdder();
+    private final LongAdder membersEvaluated = new LongAdder();
+    private final Map<RankEvaluator.Status, LongAdder> outcomes = counters(RankEvaluator.Status.class);
+    private final LongAdder skippedScans = new LongAdder();
+    private final LongAdder supersededScans = new LongAdder();
+    private final LongAdder membersNotified = new LongAdder();
+    private final LongAdder notificationsSent = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    // sizes of the last scan's snapshots, not totals
+    private volatile long snapshotBytes;
+    private volatile long nameBytes;
+    private volatile int snapshotMembers;
+
+    void scanRequested(Set<ScanTrigger> reasons)
+    {
+        scans.increment();
+        for (ScanTrigger trigger : reasons) triggers.get(trigger).increment();
+    }
+
+    /**
+     * Time spent on the client thread copying rosters.
+     */
+    void clientTime(long nanos, int members)
+    {
+        clientNanos.add(nanos);
+        membersScanned.add(members);
+    }
+
+    void backgroundTime(long nanos)
+    {
+        backgroundNanos.add(nanos);
+    }
+
+    void evaluated(RankEngine.Result result)
+    {
+        if (result.getStatus() == RankEngine.Result.Status.SKIPPED)
+        {
+            skippedScans.increment();
+            return;
+        }
+        membersEvaluated.add(result.getEvaluated());
+        final int[] counts = result.getOutcomes();
+        for (RankEvaluator.Status status : RankEvaluator.Status.values())
+        {
+            if (counts[status.ordinal()] != 0) outcomes.get(status).add(counts[status.ordinal()]);
+        }
+        membersNotified.add(result.getNotifications().size());
+    }
+
+    /**
+     * A scan was cancelled because a newer one started before it evaluated.
+     */
+    void scanSuperseded()
+    {
+        supersededScans.increment();
+    }
+
+    /**
+     * Estimated heap held by the snapshots of the last scan and by the name tables they share.
+     */
+    void snapshotMemory(long snapshotBytes, long nameBytes, int members)
+    {
+        this.snapshotBytes = snapshotBytes;
+        this.nameBytes = nameBytes;
+        this.snapshotMembers = members;
+    }
+
+    void notificationSent()
+    {
+        notificationsSent.increment();
+    }
+
+    /**
+     * Time the EDT spent applying a new due list to a table.
+     */
+    void rendered(long nanos)
+    {
+        renders.increment();
+        renderNanos.add(nanos);
+    }
+
+    /**
+     * Time the EDT spent filtering the due lists for one search keystroke.
+     */
+    void searched(long nanos)
+    {
+        searches.increment();
+        searchNanos.add(nanos);
+    }
+
+    /**
+     * @return one line per metric, for the diagnostics view and the log
+     */
+    List<String> describe()
+    {
+        final List<String> lines = new ArrayList<>();
+        final long scanCount = scans.sum();
+        lines.add("Scans: " + scanCount + " (" + skippedScans.sum() + " unchanged, "
+                + supersededScans.sum() + " superseded)");
+
+        final StringBuilder sb = new StringBuilder("Triggers:");
+        triggers.forEach((trigger, count) -> {
+            if (count.sum() > 0) sb.append(' ').append(trigger.name().toLowerCase(Locale.ROOT)).append('=').append(count.sum());
+        });
+        lines.add(sb.toString());
+
+        lines.add(String.format("Client thread: %.2f ms total, %.3f ms/scan", millis(clientNanos), average(clientNanos, scanCount)));
+        lines.add(String.format("Background: %.2f ms total, %.3f ms/scan", millis(backgroundNanos), average(backgroundNanos, scanCount)));
+        lines.add("Members scanned: " + membersScanned.sum() + ", evaluated: " + membersEvaluated.sum());
+        final int members = snapshotMembers;
+        lines.add(String.format("Snapshot: %.1f bytes/member, %.1f more for names", members == 0 ? 0.0 : snapshotBytes / (double) members,
+                members == 0 ? 0.0 : nameBytes / (double) members));
+
+        final StringBuilder out = new StringBuilder("Outcomes:");
+        outcomes.forEach((status, count) -> {
+            if (count.sum() > 0) out.append(' ').append(status.name().toLowerCase(Locale.ROOT)).append('=').append(count.sum());
+        });
+        lines.add(out.toString());
+
+        lines.add("Notified: " + membersNotified.sum() + " members in " + notificationsSent.sum() + " notifications");
+        lines.add(String.format("Panel renders: %d, %.3f ms avg", renders.sum(), average(renderNanos, renders.sum())));
+        lines.add(String.format("Searches: %d, %.3f ms avg", searches.sum(), average(searchNanos, searches.sum())));
+        return lines;
+    }
+
+    void logSummary()
+    {
+        for (String line : describe()) LOG.info("[ClanRankNotifier] {}", line);
+    }
+
+    private static double millis(LongAdder nanos)
+    {
+        return nanos.sum() / 1_000_000.0;
+    }
+
+    private static double average(LongAdder nanos, long count)
+    {
+        return count == 0 ? 0 : nanos.sum() / 1_000_000.0 / count;
+    }
+
+    private static <E extends Enum<E>> Map<E, LongAdder> counters(Class<E> type)
+    {
+        final Map<E, LongAdder> map = new EnumMap<>(type);
+        for (E e : type.getEnumConstants()) map.put(e, new LongAdder());
+        return map;
+    }
+}
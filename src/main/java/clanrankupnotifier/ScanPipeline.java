@@ -0,0 +1,399 @@
+package clanrankupnotifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A scan from its request to the published results. Every request starts a new generation
+ * that supersedes the scan in progress; the rosters are copied on the client thread and
+ * evaluated on the executor, clans in parallel, and each clan's results go to the view and
+ * to its notification digest.
+ * <p>
+ * The plugin drives it with the client, and {@code ScanReplayCli} with a recording, so a
+ * replay runs the same code as a logged in client. Everything outside the scan itself goes
+ * through the {@link Host} and the {@link View}.
+ */
+final class ScanPipeline
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ScanPipeline.class);
+
+    /**
+     * Where rosters come from and where a scan's side effects go.
+     */
+    interface Host
+    {
+        /**
+         * Client thread.
+         *
+         * @return false while there are no rosters to read
+         */
+        boolean isLoggedIn();
+
+        /**
+         * Client thread.
+         *
+         * @return the clan's roster, or null if the clan is not available
+         */
+        RosterSnapshot capture(ClanTracker tracker);
+
+        /**
+         * @return the day a scan starting now evaluates
+         */
+        LocalDate today();
+
+        /**
+         * Called on the executor before a scan evaluates its rosters.
+         *
+         * @param rosters the roster of every clan scanned, null for a clan that was not available
+         */
+        void evaluating(long generation, Set<ScanTrigger> reasons, LocalDate today, Map<ClanScope, RosterSnapshot> rosters);
+
+        /**
+         * Called on the executor once a scan published its results.
+         *
+         * @param nextChange the first day on which one of the results can change, null if none can
+         */
+        void published(LocalDate nextChange);
+
+        /**
+         * Called on the executor when a newer scan cancels one that did not publish yet.
+         */
+        default void superseded(long generation, long by) { }
+
+        /**
+         * Called on the executor for every clan a scan evaluated, before its result is published.
+         *
+         * @param result null if the clan was not available
+         */
+        default void evaluated(ClanScope scope, RosterSnapshot roster, RankEngine.Result result) { }
+
+        /**
+         * Called on the executor for a clan whose roster could not be copied or evaluated.
+         */
+        default void failed(ClanScope scope, RuntimeException error) { }
+    }
+
+    /**
+     * What the scans show; implemented by the panel. Any thread.
+     */
+    interface View
+    {
+        void setBusy(boolean busy);
+
+        void setSectionVisible(ClanScope scope, boolean visible);
+
+        void setInfoText(ClanScope scope, String text);
+
+        void setRows(ClanScope scope, List<DueEntry> rows);
+    }
+
+    private final List<ClanTracker> trackers;
+    private final ScheduledExecutorService executor;
+    private final Executor clientThread;
+    private final ScanMetrics metrics;
+    private final Host host;
+    private final View view;
+
+    // starting a scan cancels its predecessor, which then neither captures nor evaluates,
+    // and leaves its triggers to the newer scan
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Scan currentScan;
+    // only touched on the executor
+    private final EnumSet<ScanTrigger> unhandledTriggers = EnumSet.noneOf(ScanTrigger.class);
+
+    ScanPipeline(List<ClanTracker> trackers, ScheduledExecutorService executor, Executor clientThread,
+                 ScanMetrics metrics, Host host, View view)
+    {
+        this.trackers = List.copyOf(trackers);
+        this.executor = executor;
+        this.clientThread = clientThread;
+        this.metrics = metrics;
+        this.host = host;
+        this.view = view;
+    }
+
+    /**
+     * @return true from a scan's start until it published, failed or was superseded without a successor
+     */
+    boolean isScanning()
+    {
+        final Scan scan = currentScan;
+        return scan != null && !scan.done.isDone();
+    }
+
+    /**
+     * Cancels the scan in progress; nothing it captured gets evaluated or published.
+     */
+    void shutDown()
+    {
+        final Scan scan = currentScan;
+        if (scan != null) scan.done.cancel(false);
+    }
+
+    /**
+     * Starts a scan, superseding the one in progress, if any. Runs on the executor.
+     */
+    void request(Set<ScanTrigger> reasons)
+    {
+        unhandledTriggers.addAll(reasons);
+        final Scan scan = new Scan(generation.incrementAndGet());
+        final Scan previous = currentScan;
+        currentScan = scan;
+        if (previous != null && previous.done.cancel(false))
+        {
+            metrics.scanSuperseded();
+            LOG.debug("[ClanRankNotifier] scan {} superseded by {}", previous.generation, scan.generation);
+            host.superseded(previous.generation, scan.generation);
+        }
+
+        view.setBusy(true);
+        // a clan that fails is reported in its own section while the scan goes on; what
+        // fails the whole scan is shown in every section it would have updated. Only the
+        // newest scan drives the busy state, a superseded one is still in progress through
+        // its successor
+        scan.done.whenComplete((ignored, error) -> {
+            if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+            if (error != null && !(error instanceof CancellationException))
+            {
+                LOG.warn("[ClanRankNotifier] scan {} failed", scan.generation, error);
+                for (ClanTracker tracker : trackers)
+                {
+                    if (tracker.isEnabled()) view.setInfoText(tracker.getScope(), "Check failed: " + error.getMessage());
+                }
+            }
+            if (currentScan == scan) view.setBusy(false);
+        });
+        clientThread.execute(() -> capture(scan));
+    }
+
+    /**
+     * Runs on the client thread. Only copies the rosters out of the client and
+     * hands them to the executor, where the actual evaluation happens.
+     */
+    private void capture(Scan scan)
+    {
+        if (scan.done.isDone()) return;
+        if (!host.isLoggedIn())
+        {
+            scan.done.complete(null);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        int members = 0;
+        final Map<ClanTracker, RosterSnapshot> snapshots = new LinkedHashMap<>();
+        final Map<ClanTracker, RuntimeException> failures = new LinkedHashMap<>();
+        for (ClanTracker tracker : trackers)
+        {
+            if (!tracker.isEnabled()) continue;
+            try {
+                final RosterSnapshot snapshot = host.capture(tracker);
+                if (snapshot != null) members += snapshot.size();
+                snapshots.put(tracker, snapshot);
+            } catch (RuntimeException e) {
+                failures.put(tracker, e);
+            }
+        }
+        metrics.clientTime(System.nanoTime() - start, members);
+
+        executor.execute(() -> {
+            try {
+                evaluate(snapshots, failures, scan);
+                scan.done.complete(null);
+            } catch (RuntimeException e) {
+                scan.done.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Runs on the executor. Clans are evaluated in parallel on the common pool; the
+     * executor waits for all of them, so no engine is ever used by two scans at once.
+     *
+     * @param failures clans whose roster could not be captured, reported with those that fail to evaluate
+     */
+    private void evaluate(Map<ClanTracker, RosterSnapshot> snapshots, Map<ClanTracker, RuntimeException> failures, Scan scan)
+    {
+        // a newer scan is on its way with a fresher capture, it evaluates for both
+        if (scan.done.isDone()) return;
+
+        final Set<ScanTrigger> reasons = EnumSet.copyOf(unhandledTriggers);
+        unhandledTriggers.clear();
+        metrics.scanRequested(reasons);
+
+        final long start = System.nanoTime();
+        for (ClanTracker tracker : trackers)
+        {
+            if (tracker.getScope() != ClanScope.CLAN && !snapshots.containsKey(tracker) && !failures.containsKey(tracker))
+            {
+                view.setSectionVisible(tracker.getScope(), false);
+            }
+        }
+
+        final LocalDate today = host.today();
+        final boolean force = reasons.contains(ScanTrigger.MANUAL);
+        final Map<ClanScope, RosterSnapshot> rosters = new EnumMap<>(ClanScope.class);
+        snapshots.forEach((tracker, snapshot) -> rosters.put(tracker.getScope(), snapshot));
+        host.evaluating(scan.generation, reasons, today, rosters);
+
+        final Map<ClanTracker, RankEngine.Result> results = new LinkedHashMap<>();
+        if (snapshots.size() == 1)
+        {
+            final Map.Entry<ClanTracker, RosterSnapshot> only = snapshots.entrySet().iterator().next();
+            try {
+                results.put(only.getKey(), only.getKey().evaluate(only.getValue(), today, force));
+            } catch (RuntimeException e) {
+                failures.put(only.getKey(), e);
+            }
+        }
+        else
+        {
+            final Map<ClanTracker, CompletableFuture<RankEngine.Result>> futures = new LinkedHashMap<>();
+            snapshots.forEach((tracker, snapshot) -> futures.put(tracker,
+                    CompletableFuture.supplyAsync(() -> tracker.evaluate(snapshot, today, force), ForkJoinPool.commonPool())));
+            futures.forEach((tracker, future) -> {
+                try {
+                    results.put(tracker, future.join());
+                } catch (CompletionException e) {
+                    failures.put(tracker, e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e);
+                }
+            });
+        }
+
+        results.forEach((tracker, result) -> publish(tracker, snapshots.get(tracker), result, reasons));
+        failures.forEach(this::fail);
+        recordSnapshotMemory(snapshots);
+        metrics.backgroundTime(System.nanoTime() - start);
+
+        LocalDate next = null;
+        for (ClanTracker tracker : results.keySet())
+        {
+            final LocalDate day = tracker.nextChange(today);
+            if (day != null && (next == null || day.isBefore(next))) next = day;
+        }
+        host.published(next);
+    }
+
+    private void recordSnapshotMemory(Map<ClanTracker, RosterSnapshot> snapshots)
+    {
+        long bytes = 0, nameBytes = 0;
+        int members = 0;
+        // trackers share nothing, but a replayed recording reads every clan into one name table
+        final Set<NameTable> tables = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RosterSnapshot snapshot : snapshots.values())
+        {
+            if (snapshot == null) continue;
+            bytes += snapshot.estimatedBytes();
+            if (tables.add(snapshot.getNames())) nameBytes += snapshot.getNames().estimatedBytes();
+            members += snapshot.size();
+        }
+        metrics.snapshotMemory(bytes, nameBytes, members);
+    }
+
+    private void publish(ClanTracker tracker, RosterSnapshot snapshot, RankEngine.Result result, Set<ScanTrigger> reasons)
+    {
+        final ClanScope scope = tracker.getScope();
+        host.evaluated(scope, snapshot, result);
+        view.setSectionVisible(scope, result != null);
+        if (result == null)
+        {
+            view.setRows(scope, List.of());
+            return;
+        }
+
+        metrics.evaluated(result);
+        for (String problem : tracker.newRuleProblems(result.getRules()))
+        {
+            LOG.warn("[ClanRankNotifier] {} rank rules: {}", scope.getDisplayName(), problem);
+        }
+
+        switch (result.getStatus())
+        {
+            case NO_RULES:
+                if (!result.getRules().getProblems().isEmpty())
+                    view.setInfoText(scope, describeProblems("No usable rank rules.", result.getRules()));
+                view.setRows(scope, List.of());
+                return;
+            case SKIPPED:
+                LOG.debug("[ClanRankNotifier] {} scan {} skipped, inputs unchanged", scope.getDisplayName(), reasons);
+                return;
+            default:
+                break;
+        }
+
+        final RosterDiff diff = result.getDiff();
+        LOG.debug("[ClanRankNotifier] {} scan {}: roster delta {} ({} of {} members), evaluated {}{}",
+                scope.getDisplayName(), reasons, diff, diff.size(), snapshot.size(), result.getEvaluated(),
+                result.isFull() ? " (full)" : "");
+
+        tracker.getDigest().offer(result.getNotifications());
+
+        view.setInfoText(scope, describeProblems("Members due: " + result.getDue().size(), result.getRules()));
+        view.setRows(scope, result.getDue());
+    }
+
+    /**
+     * Shows a clan's failed capture or evaluation in its own section. Its engine starts
+     * over, so the next scan evaluates the clan in full instead of building on a half
+     * applied one.
+     */
+    private void fail(ClanTracker tracker, RuntimeException error)
+    {
+        final ClanScope scope = tracker.getScope();
+        LOG.warn("[ClanRankNotifier] {} check failed", scope.getDisplayName(), error);
+        tracker.getEngine().reset();
+        host.failed(scope, error);
+        view.setSectionVisible(scope, true);
+        view.setInfoText(scope, "Check failed: " + error.getMessage());
+    }
+
+    private static String describeProblems(String text, RuleTable rules)
+    {
+        final List<String> problems = rules.getProblems();
+        if (problems.isEmpty()) return text;
+
+        StringBuilder sb = new StringBuilder("<html>").append(escapeHtml(text));
+        for (String problem : problems)
+        {
+            sb.append("<br>Rule problem, ").append(escapeHtml(problem));
+        }
+        return sb.append("</html>").toString();
+    }
+
+    private static String escapeHtml(String s)
+    {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * One scan, from the roster capture on the client thread to publishing on the executor.
+     * Completes when its results are published, or is cancelled once a newer scan starts.
+     */
+    private static final class Scan
+    {
+        final long generation;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Scan(long generation)
+        {
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package clanrankupnotifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Recording of what the plugin read from the client: every rank config, the members
+ * ignored from the panel, each scan request as it arrived and each scan with the rosters
+ * it captured. {@code ScanReplayCli} in the tools source set feeds a recording back through
+ * the plugin's {@link ScanPipeline} without a client.
+ * <p>
+ * The file is a gzip stream of events, each stamped with milliseconds since the recording
+ * started. A roster identical to the previous one of its clan is written as a marker.
+ * <pre>
+ * file     := "CRR" 1 event*
+ * config   := 1 t scope rules:utf eligible:int utf* ignored:int utf* mute:bool
+ * ignores  := 2 t scope count:int (name:utf expires:long)*     expires is MIN_VALUE when permanent
+ * request  := 3 t trigger:byte
+ * scan     := 4 t triggers:int today:long clans:byte (scope kind:byte roster?)*
+ * roster   := titles:int (present:bool utf?)* members:int (name:utf joined:long rank:int)*
+ * </pre>
+ * Kind is 0 when the clan was not available, 1 for an unchanged roster and 2 when a
+ * roster follows.
+ */
+final class ScanRecording
+{
+    private static final byte[] MAGIC = {'C', 'R', 'R', 1};
+
+    private static final int CONFIG = 1;
+    private static final int IGNORES = 2;
+    private static final int REQUEST = 3;
+    private static final int SCAN = 4;
+
+    private static final int ABSENT = 0;
+    private static final int SAME = 1;
+    private static final int ROSTER = 2;
+
+    private ScanRecording() { }
+
+    /**
+     * What a recording contains, in order. Timestamps are milliseconds since it started.
+     */
+    interface Listener
+    {
+        void config(long t, ClanScope scope, RankConfig config);
+
+        void ignores(long t, ClanScope scope, List<IgnoreStore.Entry> entries);
+
+        void request(long t, ScanTrigger trigger);
+
+        /**
+         * @param rosters the roster of every clan that was scanned, null for a clan that was not available
+         */
+        void scan(long t, Set<ScanTrigger> triggers, LocalDate today, Map<ClanScope, RosterSnapshot> rosters);
+    }
+
+    /**
+     * Appends events to a new recording. Thread-safe; scan requests arrive from the client
+     * thread and the EDT while everything else is written from the executor.
+     */
+    static final class Writer implements Closeable
+    {
+        private final DataOutputStream out;
+        private final long startNanos = System.nanoTime();
+        private final Map<ClanScope, Long> lastFingerprint = new EnumMap<>(ClanScope.class);
+        private int events;
+
+        Writer(Path file) throws IOException
+        {
+            Files.createDirectories(file.getParent());
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))));
+            out.write(MAGIC);
+        }
+
+        synchronized void config(ClanScope scope, RankConfig config) throws IOException
+        {
+            begin(CONFIG);
+            out.writeByte(scope.ordinal());
+            out.writeUTF(config.getRules());
+            writeStrings(config.getEligibleRanks());
+            final List<String> ignored = new ArrayList<>();
+            for (MemberKey key : config.getIgnored()) ignored.add(key.getKey());
+            writeStrings(ignored);
+            out.writeBoolean(config.isMuteNotifications());
+        }
+
+        synchronized void ignores(ClanScope scope, List<IgnoreStore.Entry> entries) throws IOException
+        {
+            begin(IGNORES);
+            out.writeByte(scope.ordinal());
+            out.writeInt(entries.size());
+            for (IgnoreStore.Entry entry : entries)
+            {
+                out.writeUTF(entry.getName());
+                out.writeLong(entry.getExpires() == null ? Long.MIN_VALUE : entry.getExpires().toEpochDay());
+            }
+        }
+
+        synchronized void request(ScanTrigger trigger) throws IOException
+        {
+            begin(REQUEST);
+            out.writeByte(trigger.ordinal());
+        }
+
+        /**
+         * @param rosters as in {@link Listener#scan}
+         */
+        synchronized void scan(Set<ScanTrigger> triggers, LocalDate today, Map<ClanScope, RosterSnapshot> rosters) throws IOException
+        {
+            begin(SCAN);
+            int mask = 0;
+            for (ScanTrigger trigger : triggers) mask |= 1 << trigger.ordinal();
+            out.writeInt(mask);
+            out.writeLong(today.toEpochDay());
+            out.writeByte(rosters.size());
+            for (Map.Entry<ClanScope, RosterSnapshot> e : rosters.entrySet())
+            {
+                out.writeByte(e.getKey().ordinal());
+                final RosterSnapshot roster = e.getValue();
+                if (roster == null)
+                {
+                    out.writeByte(ABSENT);
+                    lastFingerprint.remove(e.getKey());
+                    continue;
+                }
+
+                final Long last = lastFingerprint.put(e.getKey(), roster.getFingerprint());
+                if (last != null && last == roster.getFingerprint())
+                {
+                    out.writeByte(SAME);
+                    continue;
+                }
+                out.writeByte(ROSTER);
+                writeRoster(roster);
+            }
+        }
+
+        synchronized int getEvents() { return events; }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            out.close();
+        }
+
+        private void begin(int type) throws IOException
+        {
+            events++;
+            out.writeByte(type);
+            out.writeLong((System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        private void writeStrings(Collection<String> strings) throws IOException
+        {
+            out.writeInt(strings.size());
+            for (String s : strings) out.writeUTF(s);
+        }
+
+        private void writeRoster(RosterSnapshot roster) throws IOException
+        {
+            final String[] titles = roster.getRankTitles();
+            out.writeInt(titles.length);
+            for (String title : titles)
+            {
+                out.writeBoolean(title != null);
+                if (title != null) out.writeUTF(title);
+            }
+            out.writeInt(roster.size());
+            for (RosterSnapshot.Member m : roster.getMembers())
+            {
+                out.writeUTF(m.getName());
+                out.writeLong(m.getJoinEpochDay());
+                out.writeInt(m.getRankValue());
+            }
+        }
+    }
+
+    /**
+     * Streams a recording to a listener. A recording cut short, e.g. by the client
+     * closing, ends at the last complete event.
+     *
+     * @return the number of events read
+     */
+    static int replay(Path file, Listener listener) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++)
+            {
+                if (magic[i] != MAGIC[i]) throw new IOException("not a scan recording: " + file);
+            }
+
+            final Map<ClanScope, RosterSnapshot> last = new EnumMap<>(ClanScope.class);
+            final NameTable names = new NameTable();
+            final ClanScope[] scopes = ClanScope.values();
+            final ScanTrigger[] triggers = ScanTrigger.values();
+            int events = 0;
+            while (true)
+            {
+                final int type = in.read();
+                if (type < 0) return events;
+                try {
+                    final long t = in.readLong();
+                    switch (type)
+                    {
+                        case CONFIG:
+                        {
+                            final ClanScope scope = scopes[in.readByte()];
+                            final String rules = in.readUTF();
+                            final List<String> eligible = readStrings(in);
+                            final Set<MemberKey> ignored = new HashSet<>();
+                            for (String key : readStrings(in)) ignored.add(MemberKey.of(key));
+                            listener.config(t, scope, new RankConfig(rules, eligible, ignored, in.readBoolean()));
+                            break;
+                        }
+                        case IGNORES:
+                        {
+                            final ClanScope scope = scopes[in.readByte()];
+                            final int count = in.readInt();
+                            final List<IgnoreStore.Entry> entries = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++)
+                            {
+                                final String name = in.readUTF();
+                                final long expires = in.readLong();
+                                entries.add(new IgnoreStore.Entry(name, expires == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(expires)));
+                            }
+                            listener.ignores(t, scope, entries);
+                            break;
+                        }
+                        case REQUEST:
+                            listener.request(t, triggers[in.readByte()]);
+                            break;
+                        case SCAN:
+                        {
+                            final int mask = in.readInt();
+                            final Set<ScanTrigger> reasons = EnumSet.noneOf(ScanTrigger.class);
+                            for (ScanTrigger trigger : triggers) if ((mask & 1 << trigger.ordinal()) != 0) reasons.add(trigger);
+                            final LocalDate today = LocalDate.ofEpochDay(in.readLong());
+
+                            final int clans = in.readByte();
+                            final Map<ClanScope, RosterSnapshot> rosters = new LinkedHashMap<>();
+                            for (int i = 0; i < clans; i++)
+                            {
+                                final ClanScope scope = scopes[in.readByte()];
+                                final int kind = in.readByte();
+                                final RosterSnapshot roster = kind == ABSENT ? null : kind == SAME ? last.get(scope) : readRoster(in, names);
+                                if (roster == null) last.remove(scope);
+                                else last.put(scope, roster);
+                                rosters.put(scope, roster);
+                            }
+                            listener.scan(t, reasons, today, rosters);
+                            break;
+                        }
+                        default:
+                            throw new IOException("unknown event " + type + " in " + file);
+                    }
+                } catch (EOFException e) {
+                    return events;
+                }
+                events++;
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException
+    {
+        final int count = in.readInt();
+        final List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) out.add(in.readUTF());
+        return out;
+    }
+
+    private static RosterSnapshot readRoster(DataInputStream in, NameTable names) throws IOException
+    {
+        final String[] titles = new String[in.readInt()];
+        for (int i = 0; i < titles.length; i++) titles[i] = in.readBoolean() ? in.readUTF() : null;
+
+        final int size = in.readInt();
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, size);
+        for (int i = 0; i < size; i++) builder.add(in.readUTF(), LocalDate.ofEpochDay(in.readLong()), in.readInt());
+        return builder.build();
+    }
+}
@@ -0,0 +1,15 @@
+package clanrankupnotifier;
+
+/**
+ * Why a roster scan was requested.
+ */
+enum ScanTrigger
+{
+    STARTUP,
+    LOGIN,
+    CLAN_CHANNEL,
+    CONFIG,
+    IGNORE,
+    ROLLOVER,
+    MANUAL
+}
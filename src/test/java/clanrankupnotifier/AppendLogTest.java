@@ -0,0 +1,115 @@
+package clanrankupnotifier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The log behind both stores: replay after a restart, compaction and a line torn by a crash.
+ */
+public class AppendLogTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LocalDate today = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void notificationsSurviveARestart() throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve("notified.log");
+        final NotificationStore store = new NotificationStore(file);
+        store.record(MemberKey.of("Alice"), "Recruit");
+        store.record(MemberKey.of("Bob"), "Recruit");
+        store.record(MemberKey.of("Alice"), "Corporal");
+        store.flush();
+
+        final NotificationStore reopened = new NotificationStore(file);
+        assertTrue(reopened.wasNotified(MemberKey.of("alice"), "Corporal"));
+        assertFalse(reopened.wasNotified(MemberKey.of("alice"), "Recruit"));
+        assertTrue(reopened.wasNotified(MemberKey.of("bob"), "Recruit"));
+        assertEquals(2, reopened.size());
+    }
+
+    @Test
+    public void linesWithTheOldDateColumnStillLoad() throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve("notified.log");
+        Files.write(file, List.of("alice\tRecruit\t2023-12-01", "bob\tRecruit"), StandardCharsets.UTF_8);
+
+        final NotificationStore store = new NotificationStore(file);
+        assertTrue(store.wasNotified(MemberKey.of("Alice"), "Recruit"));
+        assertTrue(store.wasNotified(MemberKey.of("Bob"), "Recruit"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void compactionKeepsOneLinePerEntry() throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve("notified.log");
+        final NotificationStore store = new NotificationStore(file);
+        final int records = AppendLog.MIN_COMPACT_LINES * 3 / 10 * 10;
+        for (int i = 0; i < records; i++)
+        {
+            store.record(MemberKey.of("Member " + i % 10), "Rank " + i);
+            store.flush();
+        }
+
+        assertTrue(Files.readAllLines(file).size() <= AppendLog.MIN_COMPACT_LINES);
+        assertFalse(Files.exists(file.resolveSibling("notified.log.tmp")));
+        final NotificationStore reopened = new NotificationStore(file);
+        assertEquals(10, reopened.size());
+        assertTrue(reopened.wasNotified(MemberKey.of("Member 9"), "Rank " + (records - 1)));
+    }
+
+    @Test
+    public void ignoresReplayAddsAndRemovals() throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve("ignored.log");
+        final IgnoreStore store = new IgnoreStore(file);
+        store.ignore(List.of("Alice", "Bob"), null, today);
+        store.ignore(List.of("Carol"), today.plusDays(14), today);
+        store.unignore(List.of("bob"));
+        store.flush();
+
+        final IgnoreStore reopened = new IgnoreStore(file);
+        assertEquals(Set.of(MemberKey.of("alice"), MemberKey.of("carol")), reopened.activeOn(today));
+        assertEquals(today.plusDays(14), reopened.nextExpiry(today));
+        assertEquals(Set.of(MemberKey.of("alice")), reopened.activeOn(today.plusDays(14)));
+        assertNull(reopened.nextExpiry(today.plusDays(14)));
+    }
+
+    @Test
+    public void tornLastLineIsSkippedAndRewritten() throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve("ignored.log");
+        final IgnoreStore store = new IgnoreStore(file);
+        store.ignore(List.of("Alice"), null, today);
+        store.flush();
+        // a crash while appending Bob's line
+        Files.write(file, "+\tbob\tBo".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        final IgnoreStore reopened = new IgnoreStore(file);
+        assertEquals(Set.of(MemberKey.of("alice")), reopened.activeOn(today));
+        reopened.ignore(List.of("Carol"), null, today);
+        reopened.flush();
+
+        // the next flush rewrote the log instead of appending to the torn line
+        for (String line : Files.readAllLines(file)) assertTrue(line, line.startsWith("+\talice\t") || line.startsWith("+\tcarol\t"));
+        assertEquals(Set.of(MemberKey.of("alice"), MemberKey.of("carol")), new IgnoreStore(file).activeOn(today));
+    }
+}
@@ -0,0 +1,99 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DueListIndexTest
+{
+    private static final String[] RANKS = {"Recruit", "Corporal", "Sergeant"};
+
+    /**
+     * Random queries of every length, with and without rank filters, match a contains scan.
+     */
+    @Test
+    public void matchesAContainsScan()
+    {
+        final Random random = new Random(5);
+        final List<DueEntry> rows = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+        {
+            final StringBuilder name = new StringBuilder();
+            for (int n = 1 + random.nextInt(12); n > 0; n--)
+            {
+                // few letters and some separators, so long queries share trigrams without matching
+                name.append(random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(4)));
+            }
+            if (name.toString().isBlank()) name.append('x');
+            final String current = RANKS[random.nextInt(2)];
+            final String target = RANKS[1 + random.nextInt(2)];
+            rows.add(new DueEntry(MemberKey.of(name.toString()), name.toString(), 10, 1, current, 2, target));
+        }
+        final DueListIndex index = DueListIndex.build(rows);
+
+        for (int q = 0; q < 2000; q++)
+        {
+            final String query = rows.get(random.nextInt(rows.size())).getName();
+            final int from = random.nextInt(query.length());
+            final String text = random.nextInt(5) == 0 ? "ab" + query.substring(from)
+                    : query.substring(from, from + 1 + random.nextInt(query.length() - from));
+            final String current = random.nextInt(3) == 0 ? RANKS[random.nextInt(3)] : null;
+            final String target = random.nextInt(3) == 0 ? RANKS[random.nextInt(3)] : null;
+
+            final BitSet expected = scan(rows, text, current, target);
+            final BitSet actual = index.match(text, current, target);
+            assertEquals("'" + text + "' " + current + " " + target, expected, actual == null ? all(rows.size()) : actual);
+        }
+    }
+
+    @Test
+    public void queriesFoldLikeMemberKeys()
+    {
+        final DueListIndex index = DueListIndex.build(List.of(
+                new DueEntry(MemberKey.of("Foo Bar"), "Foo Bar", 10, 1, "Recruit", 2, "Corporal"),
+                new DueEntry(MemberKey.of("Foobar"), "Foobar", 10, 1, "Recruit", 2, "Corporal")));
+
+        assertEquals(bits(0), index.match("O_B", null, null));
+        assertEquals(bits(0), index.match("FOO-BAR", null, null));
+        assertEquals(bits(1), index.match("oobar", null, null));
+        assertEquals(bits(0, 1), index.match("foo", "recruit", "CORPORAL"));
+        assertEquals(new BitSet(), index.match("foo", "General", null));
+        assertNull(index.match("  ", null, null));
+        assertEquals(List.of("Corporal", "Recruit"), index.getRankTitles());
+    }
+
+    private static BitSet scan(List<DueEntry> rows, String text, String current, String target)
+    {
+        final String needle = MemberKey.canonicalize(text);
+        final BitSet out = new BitSet();
+        for (int i = 0; i < rows.size(); i++)
+        {
+            final DueEntry row = rows.get(i);
+            if (!row.getKey().getKey().contains(needle)) continue;
+            if (current != null && !row.getCurrentRankName().equalsIgnoreCase(current)) continue;
+            if (target != null && !row.getTargetRankName().equalsIgnoreCase(target)) continue;
+            out.set(i);
+        }
+        return out;
+    }
+
+    private static BitSet all(int size)
+    {
+        final BitSet out = new BitSet();
+        out.set(0, size);
+        return out;
+    }
+
+    private static BitSet bits(int... rows)
+    {
+        final BitSet out = new BitSet();
+        for (int row : rows) out.set(row);
+        return out;
+    }
+}
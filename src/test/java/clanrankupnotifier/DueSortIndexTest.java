@@ -0,0 +1,97 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DueSortIndexTest
+{
+    /**
+     * Patches the index through random joins, departures and changes, and checks every order
+     * against sorting the whole list.
+     */
+    @Test
+    public void everyOrderMatchesAFullSort()
+    {
+        final Random random = new Random(11);
+        final DueSortIndex index = new DueSortIndex();
+        final List<DueEntry> due = new ArrayList<>();
+        int joined = 0;
+        for (int round = 0; round < 200; round++)
+        {
+            for (int c = random.nextInt(6); c > 0; c--)
+            {
+                if (due.isEmpty() || random.nextInt(3) == 0) due.add(entry(random, "Member " + joined++));
+                else if (random.nextBoolean()) due.remove(random.nextInt(due.size()));
+                else
+                {
+                    final int i = random.nextInt(due.size());
+                    due.set(i, entry(random, due.get(i).getName()));
+                }
+            }
+            index.update(new ArrayList<>(due));
+
+            final List<DueEntry> rows = index.getRows();
+            assertEquals(sorted(due, RankEngine.MOST_DAYS_FIRST), rows);
+            for (DueSortIndex.Order order : DueSortIndex.Order.values())
+            {
+                final int[] positions = index.positions(order);
+                final List<DueEntry> inOrder = new ArrayList<>();
+                for (int position : positions) inOrder.add(rows.get(position));
+                assertEquals("round " + round + " " + order, sorted(due, comparator(order)), inOrder);
+            }
+        }
+    }
+
+    @Test
+    public void anUnchangedListKeepsItsPositions()
+    {
+        final Random random = new Random(3);
+        final DueSortIndex index = new DueSortIndex();
+        final List<DueEntry> due = List.of(entry(random, "Alice"), entry(random, "Bob"), entry(random, "Carol"));
+        assertTrue(index.update(due));
+        final int[] byName = index.positions(DueSortIndex.Order.NAME);
+
+        assertFalse(index.update(new ArrayList<>(due)));
+        assertSame(byName, index.positions(DueSortIndex.Order.NAME));
+        assertTrue(index.update(due.subList(0, 2)));
+        assertEquals(2, index.positions(DueSortIndex.Order.NAME).length);
+    }
+
+    private static Comparator<DueEntry> comparator(DueSortIndex.Order order)
+    {
+        switch (order)
+        {
+            case NAME:
+                return Comparator.comparing(DueEntry::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(DueEntry::getKey);
+            case CURRENT:
+                return Comparator.comparingInt(DueEntry::getCurrentRank).thenComparing(RankEngine.MOST_DAYS_FIRST);
+            case TARGET:
+                return Comparator.comparingInt(DueEntry::getTargetRank).thenComparing(RankEngine.MOST_DAYS_FIRST);
+            default:
+                return RankEngine.MOST_DAYS_FIRST;
+        }
+    }
+
+    private static List<DueEntry> sorted(List<DueEntry> due, Comparator<DueEntry> comparator)
+    {
+        final List<DueEntry> sorted = new ArrayList<>(due);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    private static DueEntry entry(Random random, String name)
+    {
+        final int current = random.nextInt(3);
+        final int target = current + 1 + random.nextInt(2);
+        return new DueEntry(MemberKey.of(name), name, random.nextInt(60), current, "Rank" + current, target, "Rank" + target);
+    }
+}
@@ -0,0 +1,123 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DueTableModelTest
+{
+    /**
+     * Patches the model through random batches of inserts, removals, moves and changed rows.
+     * After every batch the model, and a copy kept up to date from its events alone, must show
+     * the same cells as a model rebuilt from scratch.
+     */
+    @Test
+    public void updatesMatchARebuiltModel()
+    {
+        final Random random = new Random(17);
+        final DueTableModel model = new DueTableModel();
+        final List<List<Object>> mirror = new ArrayList<>();
+        model.addTableModelListener(event -> apply(model, event, mirror));
+
+        List<DueEntry> rows = new ArrayList<>();
+        int joined = 0;
+        for (int batch = 0; batch < 500; batch++)
+        {
+            final List<DueEntry> next = new ArrayList<>(rows);
+            for (int c = random.nextInt(8); c > 0; c--)
+            {
+                switch (next.isEmpty() ? 0 : random.nextInt(4))
+                {
+                    case 0:
+                        next.add(random.nextInt(next.size() + 1), entry(random, "Member " + joined++));
+                        break;
+                    case 1:
+                        next.remove(random.nextInt(next.size()));
+                        break;
+                    case 2:
+                        next.add(random.nextInt(next.size()), next.remove(random.nextInt(next.size())));
+                        break;
+                    default:
+                        final int i = random.nextInt(next.size());
+                        next.set(i, entry(random, next.get(i).getName()));
+                        break;
+                }
+            }
+            // now and then the whole list is reordered, as after a new day
+            if (random.nextInt(50) == 0) Collections.shuffle(next, random);
+
+            model.update(next);
+            rows = next;
+
+            final DueTableModel rebuilt = new DueTableModel();
+            rebuilt.replace(next);
+            assertEquals("batch " + batch, cells(rebuilt), cells(model));
+            assertEquals("batch " + batch, cells(rebuilt), mirror);
+        }
+    }
+
+    @Test
+    public void replaceFiresOneEvent()
+    {
+        final Random random = new Random(1);
+        final DueTableModel model = new DueTableModel();
+        final List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.replace(List.of(entry(random, "Alice"), entry(random, "Bob")));
+        assertEquals(1, events.size());
+        assertEquals(2, model.getRowCount());
+        assertEquals("Bob", model.getNameAt(1));
+    }
+
+    private static void apply(DueTableModel model, TableModelEvent event, List<List<Object>> mirror)
+    {
+        final int first = event.getFirstRow();
+        final int last = event.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE)
+        {
+            mirror.clear();
+            for (int i = 0; i < model.getRowCount(); i++) mirror.add(row(model, i));
+            return;
+        }
+        switch (event.getType())
+        {
+            case TableModelEvent.INSERT:
+                for (int i = first; i <= last; i++) mirror.add(i, row(model, i));
+                break;
+            case TableModelEvent.DELETE:
+                mirror.subList(first, last + 1).clear();
+                break;
+            default:
+                for (int i = first; i <= last; i++) mirror.set(i, row(model, i));
+                break;
+        }
+    }
+
+    private static List<List<Object>> cells(DueTableModel model)
+    {
+        final List<List<Object>> cells = new ArrayList<>();
+        for (int i = 0; i < model.getRowCount(); i++) cells.add(row(model, i));
+        return cells;
+    }
+
+    private static List<Object> row(DueTableModel model, int row)
+    {
+        final Object[] cells = new Object[model.getColumnCount()];
+        for (int column = 0; column < cells.length; column++) cells[column] = model.getValueAt(row, column);
+        return Arrays.asList(cells);
+    }
+
+    private static DueEntry entry(Random random, String name)
+    {
+        final int current = random.nextInt(3);
+        return new DueEntry(MemberKey.of(name), name, random.nextInt(60), current, "Rank" + current, current + 1, "Rank" + (current + 1));
+    }
+}
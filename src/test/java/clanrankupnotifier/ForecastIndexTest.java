@@ -0,0 +1,130 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastIndexTest
+{
+    private static final String RULES = "7=Recruit\n30=Corporal\n90=Sergeant";
+
+    private final NameTable names = new NameTable();
+    private final String[] titles = titles("Guest", "Recruit", "Corporal", "Sergeant");
+    private final LocalDate today = LocalDate.of(2024, 1, 1);
+
+    /**
+     * Every member's crossing is the first later day a full evaluation finds them due.
+     */
+    @Test
+    public void crossingsMatchEvaluatingEveryLaterDay()
+    {
+        final Random random = new Random(7);
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, 200);
+        final Set<MemberKey> ignored = new HashSet<>();
+        for (int i = 0; i < 200; i++)
+        {
+            builder.add("Member " + i, today.minusDays(random.nextInt(120)), random.nextInt(4));
+            if (random.nextInt(20) == 0) ignored.add(MemberKey.of("Member " + i));
+        }
+        final RosterSnapshot snapshot = builder.build();
+        final RankConfig config = new RankConfig(RULES, Set.of("guest", "recruit", "corporal"), ignored, true);
+        final RankEngine engine = new RankEngine();
+        engine.setConfig(config);
+        final Set<MemberKey> dueToday = keys(engine.evaluate(snapshot, today, true).getDue());
+
+        final Map<MemberKey, LocalDate> expected = new HashMap<>();
+        for (int day = 1; day <= 120; day++)
+        {
+            final LocalDate date = today.plusDays(day);
+            for (MemberKey key : keys(RankEngine.evaluateOnce(snapshot, config, date, false).getDue()))
+            {
+                if (!dueToday.contains(key)) expected.putIfAbsent(key, date);
+            }
+        }
+
+        final Map<MemberKey, LocalDate> forecast = new HashMap<>();
+        for (ForecastIndex.Crossing crossing : engine.getForecast().between(today, today.plusDays(1000)))
+        {
+            forecast.put(crossing.getKey(), crossing.getDate());
+        }
+        assertTrue(expected.size() > 10);
+        assertEquals(expected, forecast);
+        assertEquals(expected.size(), engine.getForecast().size());
+    }
+
+    @Test
+    public void rangesAreInclusiveAndSortedByDate()
+    {
+        final ForecastIndex index = new ForecastIndex();
+        final RankTitleCache ranks = RankTitleCache.build(titles, Set.of());
+        final RuleTable rules = RuleTable.compile(RULES, ranks);
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, 3);
+        builder.add("Carol", today.minusDays(5), 0);
+        builder.add("Alice", today.minusDays(1), 0);
+        builder.add("Bob", today.minusDays(5), 0);
+        for (RosterSnapshot.Member member : builder.build().getMembers())
+        {
+            index.update(member, RankEvaluator.Status.NO_RULE, rules, ranks, Set.of(), today.toEpochDay());
+        }
+
+        assertEquals(List.of("Bob", "Carol"), names(index.between(today.plusDays(2), today.plusDays(2))));
+        assertEquals(List.of("Bob", "Carol", "Alice"), names(index.between(today, today.plusDays(6))));
+        assertEquals(List.of("Bob", "Carol"), names(index.reachedBy(today.plusDays(5))));
+        assertTrue(index.between(today.plusDays(7), today).isEmpty());
+        assertEquals(today.plusDays(2), index.earliest());
+
+        index.remove(MemberKey.of("bob"));
+        index.remove(MemberKey.of("carol"));
+        assertEquals(today.plusDays(6), index.earliest());
+        index.remove(MemberKey.of("alice"));
+        assertNull(index.earliest());
+    }
+
+    @Test
+    public void dueAndIgnoredMembersHaveNoCrossing()
+    {
+        final ForecastIndex index = new ForecastIndex();
+        final RankTitleCache ranks = RankTitleCache.build(titles, Set.of());
+        final RuleTable rules = RuleTable.compile(RULES, ranks);
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, 2);
+        builder.add("Alice", today.minusDays(1), 0);
+        builder.add("Bob", today.minusDays(1), 0);
+        final List<RosterSnapshot.Member> members = new ArrayList<>(builder.build().getMembers());
+
+        index.update(members.get(0), RankEvaluator.Status.DUE, rules, ranks, Set.of(), today.toEpochDay());
+        index.update(members.get(1), RankEvaluator.Status.NO_RULE, rules, ranks, Set.of(MemberKey.of("bob")), today.toEpochDay());
+        assertEquals(0, index.size());
+    }
+
+    private static Set<MemberKey> keys(List<DueEntry> due)
+    {
+        final Set<MemberKey> keys = new HashSet<>();
+        for (DueEntry entry : due) keys.add(entry.getKey());
+        return keys;
+    }
+
+    private static List<String> names(List<ForecastIndex.Crossing> crossings)
+    {
+        final List<String> names = new ArrayList<>();
+        for (ForecastIndex.Crossing crossing : crossings) names.add(crossing.getName());
+        return names;
+    }
+
+    private static String[] titles(String... byRank)
+    {
+        final String[] titles = new String[RankTitleCache.RANK_COUNT];
+        for (int rank = 0; rank < byRank.length; rank++) titles[rank - RankTitleCache.MIN_RANK] = byRank[rank];
+        return titles;
+    }
+}
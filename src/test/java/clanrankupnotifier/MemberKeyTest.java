@@ -0,0 +1,52 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemberKeyTest
+{
+    @Test
+    public void separatorsAndCaseAreTheSameName()
+    {
+        final MemberKey key = MemberKey.of("Foo Bar");
+        for (String name : List.of("foo bar", "Foo_Bar", "FOO-BAR", "Foo Bar", "  Foo   Bar  ", "_foo__bar-"))
+        {
+            assertEquals(name, key, MemberKey.of(name));
+            assertEquals(name, key.hashCode(), MemberKey.of(name).hashCode());
+        }
+        assertEquals("foo bar", key.getKey());
+    }
+
+    @Test
+    public void differentNamesStayDifferent()
+    {
+        assertNotEquals(MemberKey.of("Foo Bar"), MemberKey.of("FooBar"));
+        assertNotEquals(MemberKey.of("Foo Bar"), MemberKey.of("Foo Bar2"));
+    }
+
+    @Test
+    public void blankNamesHaveNoKey()
+    {
+        assertNull(MemberKey.of(null));
+        assertNull(MemberKey.of(""));
+        assertNull(MemberKey.of(" _-  "));
+    }
+
+    @Test
+    public void keysWorkInSetsAndSortByCanonicalName()
+    {
+        final Set<MemberKey> keys = new HashSet<>(List.of(MemberKey.of("Zed"), MemberKey.of("alpha one"), MemberKey.of("Alpha_One")));
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(MemberKey.of("ALPHA-ONE")));
+        assertTrue(MemberKey.of("Alpha One").compareTo(MemberKey.of("zed")) < 0);
+        assertEquals(0, MemberKey.of("Alpha One").compareTo(MemberKey.of("alpha_one")));
+    }
+}
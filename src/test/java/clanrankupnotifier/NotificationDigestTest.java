@@ -0,0 +1,111 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationDigestTest
+{
+    private final VirtualScheduler scheduler = new VirtualScheduler();
+    private final List<String> sent = new ArrayList<>();
+    private final List<Long> sentAt = new ArrayList<>();
+    private final List<List<DueEntry>> delivered = new ArrayList<>();
+    private boolean refuse;
+
+    private final NotificationDigest digest = new NotificationDigest(scheduler, scheduler::now, "[Clan Rank]", 1000, 60_000,
+            message ->
+            {
+                if (refuse) return false;
+                sent.add(message);
+                sentAt.add(scheduler.now());
+                return true;
+            },
+            delivered::add);
+
+    @Test
+    public void membersInsideTheWindowShareOneDigest()
+    {
+        digest.offer(List.of(entry("Alice", "Recruit")));
+        scheduler.advanceTo(500);
+        digest.offer(List.of(entry("Bob", "Corporal")));
+        scheduler.advanceTo(999);
+        assertTrue(sent.isEmpty());
+
+        scheduler.advanceTo(1000);
+        assertEquals(List.of("[Clan Rank] 2 members due: Alice → Recruit, Bob → Corporal"), sent);
+        assertEquals(List.of(List.of(entry("Alice", "Recruit"), entry("Bob", "Corporal"))), delivered);
+    }
+
+    @Test
+    public void aSingleMemberGetsTheFullSentence()
+    {
+        digest.offer(List.of(entry("Alice", "Recruit")));
+        scheduler.drain();
+        assertEquals(List.of("[Clan Rank] Alice is 30 days in clan → due for Recruit (current: Guest)"), sent);
+    }
+
+    @Test
+    public void theMinimumIntervalHoldsTheNextDigestBack()
+    {
+        digest.offer(List.of(entry("Alice", "Recruit")));
+        scheduler.advanceTo(1000);
+        digest.offer(List.of(entry("Bob", "Recruit")));
+        scheduler.advanceTo(60_999);
+        digest.offer(List.of(entry("Carol", "Recruit")));
+        assertEquals(1, sent.size());
+
+        scheduler.advanceTo(61_000);
+        assertEquals(List.of(1000L, 61_000L), sentAt);
+        assertEquals("[Clan Rank] 2 members due: Bob → Recruit, Carol → Recruit", sent.get(1));
+    }
+
+    @Test
+    public void aMemberWhoMovedOnShowsUpOnce()
+    {
+        digest.offer(List.of(entry("Alice", "Recruit"), entry("Bob", "Recruit")));
+        digest.offer(List.of(entry("Alice", "Corporal")));
+        scheduler.drain();
+        assertEquals(List.of("[Clan Rank] 2 members due: Alice → Corporal, Bob → Recruit"), sent);
+    }
+
+    @Test
+    public void longDigestsSummarizeTheRest()
+    {
+        final List<DueEntry> entries = new ArrayList<>();
+        for (int i = 1; i <= NotificationDigest.MAX_LISTED + 3; i++) entries.add(entry("Member " + i, "Recruit"));
+        digest.offer(entries);
+        scheduler.drain();
+
+        assertEquals(List.of("[Clan Rank] 8 members due: Member 1 → Recruit, Member 2 → Recruit, Member 3 → Recruit, "
+                + "Member 4 → Recruit, Member 5 → Recruit and 3 more"), sent);
+        assertEquals(entries, delivered.get(0));
+    }
+
+    @Test
+    public void aRefusedDigestIsNotReportedAsDelivered()
+    {
+        refuse = true;
+        digest.offer(List.of(entry("Alice", "Recruit")));
+        scheduler.drain();
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void cancelDropsThePendingMembers()
+    {
+        digest.offer(List.of(entry("Alice", "Recruit"), entry("Bob", "Recruit")));
+        assertEquals(2, digest.cancel());
+        scheduler.drain();
+        assertTrue(sent.isEmpty());
+        assertTrue(delivered.isEmpty());
+    }
+
+    private static DueEntry entry(String name, String target)
+    {
+        return new DueEntry(MemberKey.of(name), name, 30, 0, "Guest", 1, target);
+    }
+}
@@ -0,0 +1,137 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RankEngineTest
+{
+    private static final String RULES = "7=Recruit\n30=Corporal\n90=Sergeant";
+
+    private final NameTable names = new NameTable();
+    private final String[] titles = titles("Guest", "Recruit", "Corporal", "Sergeant");
+
+    /**
+     * Runs a roster through months of joins, departures, promotions and ignore changes, and
+     * checks every incremental evaluation against a full one of the same snapshot.
+     */
+    @Test
+    public void incrementalMatchesFullEvaluation()
+    {
+        final Random random = new Random(42);
+        final RankConfig config = new RankConfig(RULES, Set.of("guest", "recruit", "corporal"), Set.of(), true);
+        final RankEngine engine = new RankEngine();
+        engine.setConfig(config);
+
+        final List<Row> roster = new ArrayList<>();
+        LocalDate today = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 200; i++) roster.add(new Row("Member " + i, today.minusDays(random.nextInt(120)), random.nextInt(4)));
+        int joined = roster.size();
+        Set<MemberKey> extraIgnored = Set.of();
+
+        for (int scan = 0; scan < 300; scan++)
+        {
+            if (random.nextInt(3) == 0) today = today.plusDays(1 + random.nextInt(3));
+            final int changes = random.nextInt(5);
+            for (int c = 0; c < changes; c++)
+            {
+                final int i = random.nextInt(roster.size());
+                switch (random.nextInt(4))
+                {
+                    case 0: roster.add(new Row("Member " + joined++, today, 0)); break;
+                    case 1: roster.remove(i); break;
+                    default: roster.set(i, roster.get(i).promoted(random.nextInt(4))); break;
+                }
+            }
+            if (random.nextInt(10) == 0)
+            {
+                final Set<MemberKey> keys = new HashSet<>();
+                for (int k = random.nextInt(4); k > 0; k--) keys.add(MemberKey.of(roster.get(random.nextInt(roster.size())).name));
+                extraIgnored = Set.copyOf(keys);
+            }
+
+            final RosterSnapshot snapshot = snapshot(roster);
+            engine.setExtraIgnored(extraIgnored);
+            final RankEngine.Result incremental = engine.evaluate(snapshot, today, false);
+            final RankConfig withIgnores = new RankConfig(RULES, config.getEligibleRanks(), extraIgnored, true);
+            final RankEngine.Result full = RankEngine.evaluateOnce(snapshot, withIgnores, today, false);
+            assertEquals("scan " + scan + " on " + today, full.getDue(), incremental.getDue());
+        }
+    }
+
+    @Test
+    public void emptyEligibleListMakesEveryRankEligible()
+    {
+        final LocalDate today = LocalDate.of(2024, 1, 1);
+        final List<Row> roster = List.of(new Row("Old guest", today.minusDays(40), 0), new Row("Old corporal", today.minusDays(100), 2));
+        final RankEngine.Result result = RankEngine.evaluateOnce(snapshot(roster),
+                new RankConfig(RULES, Set.of(), Set.of(), true), today, false);
+        assertEquals(2, result.getDue().size());
+    }
+
+    /**
+     * A member is offered again until their notification is actually delivered.
+     */
+    @Test
+    public void membersStayUnrecordedUntilDelivered()
+    {
+        final LocalDate today = LocalDate.of(2024, 1, 1);
+        final RosterSnapshot snapshot = snapshot(List.of(new Row("Due member", today.minusDays(10), 0)));
+        final RankEngine engine = new RankEngine();
+        engine.setConfig(new RankConfig(RULES, Set.of(), Set.of(), false));
+
+        final RankEngine.Result first = engine.evaluate(snapshot, today, true);
+        assertEquals(1, first.getNotifications().size());
+
+        engine.reset();
+        final RankEngine.Result undelivered = engine.evaluate(snapshot, today, true);
+        assertEquals(first.getNotifications(), undelivered.getNotifications());
+
+        engine.markNotified(undelivered.getNotifications());
+        engine.reset();
+        assertTrue(engine.evaluate(snapshot, today, true).getNotifications().isEmpty());
+        assertFalse(engine.evaluate(snapshot, today, true).getDue().isEmpty());
+    }
+
+    private RosterSnapshot snapshot(List<Row> roster)
+    {
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, roster.size());
+        for (Row row : roster) builder.add(row.name, row.joined, row.rank);
+        return builder.build();
+    }
+
+    private static String[] titles(String... byRank)
+    {
+        final String[] titles = new String[RankTitleCache.RANK_COUNT];
+        for (int rank = 0; rank < byRank.length; rank++) titles[rank - RankTitleCache.MIN_RANK] = byRank[rank];
+        return titles;
+    }
+
+    private static final class Row
+    {
+        final String name;
+        final LocalDate joined;
+        final int rank;
+
+        Row(String name, LocalDate joined, int rank)
+        {
+            this.name = name;
+            this.joined = joined;
+            this.rank = rank;
+        }
+
+        Row promoted(int rank)
+        {
+            return new Row(name, joined, rank);
+        }
+    }
+}
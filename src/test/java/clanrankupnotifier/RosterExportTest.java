@@ -0,0 +1,151 @@
+package clanrankupnotifier;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Roster exports read by {@link RosterExport}, evaluated and written back by {@link RosterExporter}.
+ */
+public class RosterExportTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LocalDate today = LocalDate.of(2024, 3, 1);
+
+    // ordered by status, the longest waiting on top; the rules only know ranks some member holds
+    private final List<List<String>> expected = List.of(
+            List.of("Clan", "Smith, John", "10", "Guest", "Recruit", "DUE"),
+            List.of("Clan", "Bob", "60", "Corporal", "Corporal", "AT_RANK"),
+            List.of("Clan", "Ann \"Ace\" Lee", "2", "Recruit", "", "NO_RULE"),
+            List.of("Clan", "Cid", "60", RankTitleCache.NOT_RANKED, "Corporal", "UNRANKED"));
+
+    @Test
+    public void csvRoundTrip() throws IOException
+    {
+        final RosterExport export = read("roster.csv", String.join("\n",
+                "RSN,Join Date,Title,Snapshot",
+                "\"Smith, John\",2024-02-20,Guest,2024-03-01",
+                "\"Ann \"\"Ace\"\" Lee\",2024-02-28,Recruit,2024-03-01",
+                "Bob,2024-01-01,Corporal,2024-03-01",
+                "Cid,2024-01-01,,2024-03-01",
+                "Dee,soon,Guest,2024-03-01"));
+        assertEquals("roster.csv", export.getSource());
+        assertEquals(today, export.getDate());
+        assertEquals(1, export.getSkipped());
+
+        final StringWriter out = new StringWriter();
+        try (RosterExporter exporter = new RosterExporter(out, RosterExporter.Format.CSV))
+        {
+            exporter.add("Clan", evaluate(export), today);
+            assertEquals(4, exporter.getRows());
+        }
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals("clan,name,days,current_rank,target_rank,status", lines[0]);
+        final List<List<String>> rows = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) rows.add(RosterExport.splitCsv(lines[i]));
+        assertEquals(expected, rows);
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException
+    {
+        final List<RosterExport> exports = RosterExport.read(write("roster.json", "{\"members\": ["
+                + "{\"name\": \"Smith, John\", \"joined\": \"2024-02-20\", \"rank\": \"Guest\"},"
+                + "{\"name\": \"Ann \\\"Ace\\\" Lee\", \"joinDate\": \"2024-02-28\", \"rank\": \"Recruit\"},"
+                + "{\"name\": \"Bob\", \"joined\": \"2024-01-01\", \"rank\": \"Corporal\"},"
+                + "{\"name\": \"Cid\", \"joined\": \"2024-01-01\", \"rank\": null},"
+                + "{\"joined\": \"2024-01-01\", \"rank\": \"Guest\"}]}"), new NameTable());
+        assertEquals(1, exports.size());
+        assertEquals(1, exports.get(0).getSkipped());
+
+        final StringWriter out = new StringWriter();
+        try (RosterExporter exporter = new RosterExporter(out, RosterExporter.Format.JSON))
+        {
+            exporter.add("Clan", evaluate(exports.get(0)), today);
+        }
+        assertEquals(expected, readJson(out.toString()));
+    }
+
+    @Test
+    public void rowsAreGroupedBySnapshotDate() throws IOException
+    {
+        final List<RosterExport> exports = RosterExport.read(write("history.csv", String.join("\n",
+                "Alice,2024-01-01,Guest,2024-02-01",
+                "Alice,2024-01-01,Recruit,2024-03-01",
+                "Bob,2024-02-15,Guest,2024-03-01")), new NameTable());
+
+        assertEquals(2, exports.size());
+        assertEquals("history.csv@2024-02-01", exports.get(0).getSource());
+        assertEquals(1, exports.get(0).getSnapshot().getMembers().size());
+        assertEquals("history.csv@2024-03-01", exports.get(1).getSource());
+        assertEquals(2, exports.get(1).getSnapshot().getMembers().size());
+    }
+
+    private RankEngine evaluate(RosterExport export)
+    {
+        final RankEngine engine = new RankEngine();
+        engine.setConfig(new RankConfig("7=Recruit\n30=Corporal", Set.of(), Set.of(), true));
+        engine.evaluate(export.getSnapshot(), today, true);
+        return engine;
+    }
+
+    private RosterExport read(String fileName, String text) throws IOException
+    {
+        final List<RosterExport> exports = RosterExport.read(write(fileName, text), new NameTable());
+        assertEquals(1, exports.size());
+        return exports.get(0);
+    }
+
+    private Path write(String fileName, String text) throws IOException
+    {
+        final Path file = folder.getRoot().toPath().resolve(fileName);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<List<String>> readJson(String text) throws IOException
+    {
+        final List<List<String>> rows = new ArrayList<>();
+        try (JsonReader json = new JsonReader(new StringReader(text)))
+        {
+            json.beginArray();
+            while (json.hasNext())
+            {
+                final List<String> row = new ArrayList<>();
+                json.beginObject();
+                while (json.hasNext())
+                {
+                    json.nextName();
+                    if (json.peek() == JsonToken.NULL)
+                    {
+                        json.nextNull();
+                        row.add("");
+                    }
+                    else row.add(json.nextString());
+                }
+                json.endObject();
+                rows.add(row);
+            }
+            json.endArray();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,173 @@
+package clanrankupnotifier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RosterHistoryTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final NameTable names = new NameTable();
+    private final String[] titles = new String[RankTitleCache.RANK_COUNT];
+    private final LocalDate day = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void recordsOnlyChanges() throws IOException
+    {
+        final RosterHistory history = new RosterHistory(file());
+        assertTrue(history.record(snapshot("Alice", 1, "Bob", 1), day));
+        assertFalse(history.record(snapshot("Alice", 1, "Bob", 1), day.plusDays(1)));
+        assertTrue(history.record(snapshot("Alice", 2), day.plusDays(2)));
+
+        assertEquals(List.of(day + "  joined as Recruit", day.plusDays(2) + "  Recruit → Corporal"),
+                strings(history.historyOf(MemberKey.of("alice"))));
+        assertEquals(List.of(day + "  joined as Recruit", day.plusDays(2) + "  left as Recruit"),
+                strings(history.historyOf(MemberKey.of("bob"))));
+        assertEquals(day, history.firstDay());
+    }
+
+    /**
+     * A block cut short by a crash is ignored on load and overwritten by the next append.
+     */
+    @Test
+    public void tornBlockIsDroppedAndOverwritten() throws IOException
+    {
+        final Path file = file();
+        final RosterHistory history = new RosterHistory(file);
+        history.record(snapshot("Alice", 1), day);
+        history.record(snapshot("Alice", 2), day.plusDays(1));
+        final long intact = Files.size(file);
+
+        // a length announcing more bytes than made it to disk
+        Files.write(file, new byte[]{0, 0, 0, 40, 2, 1, 5}, StandardOpenOption.APPEND);
+
+        final RosterHistory reopened = new RosterHistory(file);
+        final List<String> alice = List.of(day + "  joined as Recruit", day.plusDays(1) + "  Recruit → Corporal");
+        assertEquals(alice, strings(reopened.historyOf(MemberKey.of("alice"))));
+
+        assertTrue(reopened.record(snapshot("Alice", 2, "Bob", 1), day.plusDays(2)));
+        assertTrue(Files.size(file) > intact);
+        assertTrue(Files.size(file) < intact + 40);
+
+        final RosterHistory afterRepair = new RosterHistory(file);
+        assertEquals(alice, strings(afterRepair.historyOf(MemberKey.of("alice"))));
+        assertEquals(List.of(day.plusDays(2) + "  joined as Recruit"), strings(afterRepair.historyOf(MemberKey.of("bob"))));
+    }
+
+    /**
+     * Range queries start at a checkpoint instead of the first block; they must report exactly
+     * what a scan of every member's full history reports for the same days.
+     */
+    @Test
+    public void changesBetweenMatchesAFullScan() throws IOException
+    {
+        final Path file = file();
+        final RosterHistory history = new RosterHistory(file);
+        final Random random = new Random(7);
+        final Map<String, Integer> roster = new LinkedHashMap<>();
+        final List<String> everyone = new ArrayList<>();
+        LocalDate date = day;
+        for (int i = 0; i < 40; i++) join(roster, everyone, "Member " + i, 1);
+        for (int step = 0; step < RosterHistory.CHECKPOINT_BLOCKS * 5; step++)
+        {
+            date = date.plusDays(1 + random.nextInt(2));
+            for (int c = random.nextInt(4); c > 0; c--)
+            {
+                final String name = everyone.get(random.nextInt(everyone.size()));
+                switch (random.nextInt(3))
+                {
+                    case 0: join(roster, everyone, "Member " + everyone.size(), 1); break;
+                    case 1: roster.remove(name); break;
+                    default: roster.put(name, 1 + random.nextInt(2)); break;
+                }
+            }
+            final Object[] members = new Object[roster.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, Integer> e : roster.entrySet())
+            {
+                members[i++] = e.getKey();
+                members[i++] = e.getValue();
+            }
+            history.record(snapshot(members), date);
+        }
+
+        final LocalDate last = date;
+        for (RosterHistory queried : List.of(history, new RosterHistory(file)))
+        {
+            for (int q = 0; q < 100; q++)
+            {
+                final LocalDate from = day.plusDays(random.nextInt(400) - 20);
+                final LocalDate to = from.plusDays(random.nextInt(60));
+                final List<String> expected = new ArrayList<>();
+                for (String name : everyone)
+                {
+                    for (RosterHistory.Change c : queried.historyOf(MemberKey.of(name)))
+                    {
+                        if (!c.getDate().isBefore(from) && !c.getDate().isAfter(to)) expected.add(name + " " + c);
+                    }
+                }
+
+                final List<String> actual = new ArrayList<>();
+                LocalDate previous = LocalDate.MIN;
+                for (RosterHistory.Change c : queried.changesBetween(from, to))
+                {
+                    assertFalse(c.getDate().isBefore(previous));
+                    previous = c.getDate();
+                    actual.add(c.getName() + " " + c);
+                }
+                Collections.sort(expected);
+                Collections.sort(actual);
+                assertEquals(from + " to " + to, expected, actual);
+            }
+            assertTrue(queried.changesBetween(last.plusDays(1), last.plusDays(30)).isEmpty());
+        }
+    }
+
+    private static void join(Map<String, Integer> roster, List<String> everyone, String name, int rank)
+    {
+        roster.put(name, rank);
+        everyone.add(name);
+    }
+
+    private Path file() throws IOException
+    {
+        titles[1 - RankTitleCache.MIN_RANK] = "Recruit";
+        titles[2 - RankTitleCache.MIN_RANK] = "Corporal";
+        return folder.newFolder().toPath().resolve("history.bin");
+    }
+
+    /**
+     * @param members name and rank pairs
+     */
+    private RosterSnapshot snapshot(Object... members)
+    {
+        final RosterSnapshot.Builder builder = new RosterSnapshot.Builder(names, titles, members.length / 2);
+        for (int i = 0; i < members.length; i += 2) builder.add((String) members[i], day.minusDays(30), (Integer) members[i + 1]);
+        return builder.build();
+    }
+
+    private static List<String> strings(List<RosterHistory.Change> changes)
+    {
+        final List<String> out = new ArrayList<>();
+        for (RosterHistory.Change change : changes) out.add(change.toString());
+        return out;
+    }
+}
@@ -0,0 +1,116 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuleTableTest
+{
+    private final RankTitleCache ranks = RankTitleCache.build(titles("Guest", "Recruit", "Corporal", "Sergeant"), Set.of());
+
+    /**
+     * Thresholds on both sides of the dense array's 4096 day limit resolve like a linear search.
+     */
+    @Test
+    public void ruleForMatchesALinearSearch()
+    {
+        final int[] thresholds = {0, 7, 30, 4095, 4096, 4097, 5000, 100000};
+        final StringBuilder text = new StringBuilder();
+        for (int days : thresholds) text.append(days).append("=Recruit\n");
+        final RuleTable rules = RuleTable.compile(text.toString(), ranks);
+        assertTrue(rules.getProblems().isEmpty());
+
+        for (long days = -2; days < 6000; days++) assertEquals("day " + days, linear(thresholds, days), rules.ruleFor(days));
+        for (long days : new long[]{99999, 100000, 100001, Integer.MAX_VALUE, Long.MAX_VALUE})
+        {
+            assertEquals("day " + days, linear(thresholds, days), rules.ruleFor(days));
+        }
+    }
+
+    @Test
+    public void onlySparseThresholds()
+    {
+        final RuleTable rules = RuleTable.compile("5000=Recruit\n9000=Corporal", ranks);
+        assertEquals(RuleTable.NO_RULE, rules.ruleFor(4096));
+        assertEquals(RuleTable.NO_RULE, rules.ruleFor(4999));
+        assertEquals(0, rules.ruleFor(5000));
+        assertEquals(0, rules.ruleFor(8999));
+        assertEquals(1, rules.ruleFor(9000));
+    }
+
+    @Test
+    public void problemsNameTheLine()
+    {
+        final RuleTable rules = RuleTable.compile(String.join("\n",
+                "# comment",
+                "",
+                "7=Recruit",
+                "seven=Recruit",
+                "-1=Recruit",
+                "30=",
+                "30",
+                "7=Corporal",
+                "90=General"), ranks);
+
+        assertEquals(List.of(
+                "line 4: 'seven' is not a number of days",
+                "line 5: days can not be negative",
+                "line 6: expected 'days = rank'",
+                "line 7: expected 'days = rank'",
+                "line 8: duplicate rule for 7 days",
+                "unknown rank 'General' for 90 days"), rules.getProblems());
+        // the later duplicate wins, the unknown rank stays as a rule that never changes anyone
+        assertEquals(2, rules.targetRank(0));
+        assertEquals("Corporal", rules.targetName(0));
+        assertEquals(RuleTable.UNRESOLVED, rules.targetRank(1));
+        assertEquals("General", rules.targetName(1));
+    }
+
+    @Test
+    public void ranksResolveByTitleOrNumber()
+    {
+        final RuleTable rules = RuleTable.compile("7 = recruit\n30 = 2", ranks);
+        assertTrue(rules.getProblems().isEmpty());
+        assertEquals(1, rules.targetRank(0));
+        assertEquals("Recruit", rules.targetName(0));
+        assertEquals(2, rules.targetRank(1));
+        assertEquals("Corporal", rules.targetName(1));
+    }
+
+    @Test
+    public void nextRuleChangingSkipsRulesThatChangeNothing()
+    {
+        final RuleTable rules = RuleTable.compile("7=Recruit\n14=Recruit\n30=Unknown\n90=Sergeant", ranks);
+        assertEquals(3, rules.nextRuleChanging(8, 1));
+        assertEquals(1, rules.nextRuleChanging(8, 0));
+        assertEquals(RuleTable.NO_RULE, rules.nextRuleChanging(90, 1));
+    }
+
+    @Test
+    public void emptyRules()
+    {
+        final RuleTable rules = RuleTable.compile("  \n# nothing\n", ranks);
+        assertTrue(rules.isEmpty());
+        assertTrue(rules.getProblems().isEmpty());
+        assertEquals(RuleTable.NO_RULE, rules.ruleFor(0));
+        assertEquals(RuleTable.NO_RULE, rules.ruleFor(10000));
+    }
+
+    private static int linear(int[] thresholds, long days)
+    {
+        int rule = RuleTable.NO_RULE;
+        for (int i = 0; i < thresholds.length; i++) if (thresholds[i] <= days) rule = i;
+        return rule;
+    }
+
+    private static String[] titles(String... byRank)
+    {
+        final String[] titles = new String[RankTitleCache.RANK_COUNT];
+        for (int rank = 0; rank < byRank.length; rank++) titles[rank - RankTitleCache.MIN_RANK] = byRank[rank];
+        return titles;
+    }
+}
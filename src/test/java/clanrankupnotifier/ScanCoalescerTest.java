@@ -0,0 +1,63 @@
+package clanrankupnotifier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanCoalescerTest
+{
+    private final VirtualScheduler scheduler = new VirtualScheduler();
+    private final List<Set<ScanTrigger>> scans = new ArrayList<>();
+    private final List<Long> scannedAt = new ArrayList<>();
+    private final ScanCoalescer coalescer = new ScanCoalescer(scheduler, 250, reasons ->
+    {
+        scans.add(reasons);
+        scannedAt.add(scheduler.now());
+    });
+
+    @Test
+    public void requestsInsideTheWindowShareOneScan()
+    {
+        coalescer.request(ScanTrigger.CLAN_CHANNEL);
+        scheduler.advanceTo(100);
+        coalescer.request(ScanTrigger.CONFIG);
+        coalescer.request(ScanTrigger.CLAN_CHANNEL);
+        scheduler.advanceTo(249);
+        assertTrue(scans.isEmpty());
+
+        scheduler.advanceTo(250);
+        assertEquals(List.of(EnumSet.of(ScanTrigger.CLAN_CHANNEL, ScanTrigger.CONFIG)), scans);
+        assertEquals(List.of(250L), scannedAt);
+    }
+
+    @Test
+    public void aRequestAfterTheScanOpensANewWindow()
+    {
+        coalescer.request(ScanTrigger.CLAN_CHANNEL);
+        scheduler.advanceTo(250);
+        coalescer.request(ScanTrigger.CONFIG);
+        scheduler.advanceTo(1000);
+
+        assertEquals(List.of(EnumSet.of(ScanTrigger.CLAN_CHANNEL), EnumSet.of(ScanTrigger.CONFIG)), scans);
+        assertEquals(List.of(250L, 500L), scannedAt);
+    }
+
+    @Test
+    public void cancelDropsThePendingRequests()
+    {
+        coalescer.request(ScanTrigger.CLAN_CHANNEL);
+        coalescer.cancel();
+        scheduler.drain();
+        assertTrue(scans.isEmpty());
+
+        coalescer.request(ScanTrigger.CONFIG);
+        scheduler.drain();
+        assertEquals(List.of(EnumSet.of(ScanTrigger.CONFIG)), scans);
+    }
+}
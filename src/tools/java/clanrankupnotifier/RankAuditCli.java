@@ -0,0 +1,181 @@
+package clanrankupnotifier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Batch mode: evaluates roster exports against a rules file outside the game, in parallel
+ * across all cores, and writes every due member as CSV.
+ * <pre>
+ * RankAuditCli --rules rules.txt [--eligible Recruit,Corporal] [--ignore "Alt One,Alt Two"]
+ *              [--date 2024-01-31] [--threads 8] [--out due.csv] export.csv [export.json ...]
+ * </pre>
+ * The rules file uses the same format as the plugin's "Rank rules" setting. Each snapshot
+ * is evaluated as of its own snapshot date, falling back to {@code --date} and then today.
+ */
+public final class RankAuditCli
+{
+    private RankAuditCli() { }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException, InterruptedException
+    {
+        String rulesFile = null, eligible = "", ignore = "", outFile = null;
+        LocalDate date = LocalDate.now();
+        int threads = Runtime.getRuntime().availableProcessors();
+        final List<Path> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--rules": rulesFile = args[++i]; break;
+                    case "--eligible": eligible = args[++i]; break;
+                    case "--ignore": ignore = args[++i]; break;
+                    case "--date": date = LocalDate.parse(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--out": outFile = args[++i]; break;
+                    default: inputs.add(Paths.get(args[i])); break;
+                }
+            }
+        } catch (RuntimeException e) {
+            return usage(err, "bad arguments: " + e.getMessage());
+        }
+        if (rulesFile == null || inputs.isEmpty()) return usage(err, null);
+
+        final RankConfig config = new RankConfig(
+                Files.readString(Paths.get(rulesFile), StandardCharsets.UTF_8),
+                RankConfig.csvToLowerSet(eligible),
+                RankConfig.csvToKeySet(ignore),
+                true);
+
+        final long start = System.nanoTime();
+        // names repeat across the snapshots of a clan, so all of them share one table
+        final NameTable names = new NameTable();
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        final List<Audit> audits;
+        try {
+            final LocalDate fallbackDate = date;
+            audits = pool.submit(() -> inputs.parallelStream()
+                    .flatMap(path -> readQuietly(path, names, err).stream())
+                    .map(export -> evaluate(export, config, fallbackDate))
+                    .collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            err.println("evaluation failed: " + e.getCause());
+            return 1;
+        } finally {
+            pool.shutdown();
+        }
+        final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        int rows = 0, due = 0, skipped = 0;
+        long snapshotBytes = 0;
+        final Map<String, List<String>> problems = new LinkedHashMap<>();
+        try (Writer w = outFile == null
+                ? new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(outFile), StandardCharsets.UTF_8))
+        {
+            w.write("snapshot,date,name,days,current_rank,target_rank\n");
+            for (Audit audit : audits)
+            {
+                rows += audit.export.getSnapshot().size();
+                snapshotBytes += audit.export.getSnapshot().estimatedBytes();
+                skipped += audit.export.getSkipped();
+                due += audit.result.getDue().size();
+                for (String p : audit.result.getRules().getProblems())
+                {
+                    problems.computeIfAbsent(p, k -> new ArrayList<>()).add(audit.export.getSource());
+                }
+
+                for (DueEntry entry : audit.result.getDue())
+                {
+                    w.write(RosterExporter.csv(audit.export.getSource()));
+                    w.write(',');
+                    w.write(audit.date.toString());
+                    w.write(',');
+                    w.write(RosterExporter.csv(entry.getName()));
+                    w.write(',');
+                    w.write(Integer.toString(entry.getDays()));
+                    w.write(',');
+                    w.write(RosterExporter.csv(entry.getCurrentRankName()));
+                    w.write(',');
+                    w.write(RosterExporter.csv(entry.getTargetRankName()));
+                    w.write('\n');
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<String>> p : problems.entrySet())
+        {
+            final List<String> sources = p.getValue();
+            err.println("rule problem, " + p.getKey() + " (" + sources.get(0)
+                    + (sources.size() > 1 ? " and " + (sources.size() - 1) + " more snapshots" : "") + ")");
+        }
+        err.printf("evaluated %d members in %d snapshots from %d files in %d ms on %d threads: %d due, %d rows skipped%n",
+                rows, audits.size(), inputs.size(), elapsedMs, threads, due, skipped);
+        final long nameBytes = names.estimatedBytes();
+        err.printf("snapshots hold about %.1f bytes per member: %d KB of columns and %d KB for %d distinct names%n",
+                rows == 0 ? 0.0 : (snapshotBytes + nameBytes) / (double) rows, snapshotBytes / 1024, nameBytes / 1024, names.size());
+        return 0;
+    }
+
+    private static Audit evaluate(RosterExport export, RankConfig config, LocalDate fallbackDate)
+    {
+        final LocalDate date = export.getDate() == null ? fallbackDate : export.getDate();
+        // split big snapshots across the pool as well, small ones are not worth the overhead
+        final boolean parallel = export.getSnapshot().size() > 10_000;
+        return new Audit(export, date, RankEngine.evaluateOnce(export.getSnapshot(), config, date, parallel));
+    }
+
+    private static List<RosterExport> readQuietly(Path path, NameTable names, PrintStream err)
+    {
+        try {
+            return RosterExport.read(path, names);
+        } catch (IOException | RuntimeException e) {
+            err.println("skipping " + path + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static int usage(PrintStream err, String problem)
+    {
+        if (problem != null) err.println(problem);
+        err.println("usage: RankAuditCli --rules <file> [--eligible ranks] [--ignore names] [--date yyyy-mm-dd]");
+        err.println("                    [--threads n] [--out file] <roster.csv|roster.json>...");
+        return 2;
+    }
+
+    private static final class Audit
+    {
+        final RosterExport export;
+        final LocalDate date;
+        final RankEngine.Result result;
+
+        Audit(RosterExport export, LocalDate date, RankEngine.Result result)
+        {
+            this.export = export;
+            this.date = date;
+            this.result = result;
+        }
+    }
+}
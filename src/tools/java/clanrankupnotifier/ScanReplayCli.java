@@ -0,0 +1,321 @@
+package clanrankupnotifier;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays a {@link ScanRecording} through the plugin's {@link ScanPipeline} without a client.
+ * The recorded requests go through a {@link ScanCoalescer}, and the notifications through each
+ * clan's {@link NotificationDigest}, on a {@link VirtualScheduler} that follows the recorded
+ * timing without waiting for it. A scan started by the coalescer captures the rosters of the
+ * next recorded scan in place of the clan settings; a scan superseded before that never
+ * evaluates, as in the plugin.
+ * <pre>
+ * ScanReplayCli [--out transcript.txt] [--expect transcript.txt] [--repeat n]
+ *               [--window s] [--interval s] recording.crr
+ * </pre>
+ * The transcript lists every scan with its outcome and due list, superseded scans, and the
+ * digests with the time they would have been sent; it only depends on the recording and the
+ * digest timing, so {@code --expect} turns a recording into a regression test.
+ * {@code --window} and {@code --interval} set the digest timing in seconds, by default the
+ * config's. {@code --repeat} replays the recording several times and reports the fastest run,
+ * for profiling.
+ */
+public final class ScanReplayCli
+{
+    // the config's defaults for the digest timing
+    private static final int DEFAULT_WINDOW_S = 5;
+    private static final int DEFAULT_INTERVAL_S = 60;
+
+    private ScanReplayCli() { }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException
+    {
+        String outFile = null, expectFile = null;
+        int repeat = 1;
+        long windowMs = DEFAULT_WINDOW_S * 1000L, intervalMs = DEFAULT_INTERVAL_S * 1000L;
+        Path recording = null;
+
+        try {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--out": outFile = args[++i]; break;
+                    case "--expect": expectFile = args[++i]; break;
+                    case "--repeat": repeat = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--window": windowMs = (long) (Double.parseDouble(args[++i]) * 1000); break;
+                    case "--interval": intervalMs = (long) (Double.parseDouble(args[++i]) * 1000); break;
+                    default: recording = Paths.get(args[i]); break;
+                }
+            }
+        } catch (RuntimeException e) {
+            return usage(err, "bad arguments: " + e.getMessage());
+        }
+        if (recording == null) return usage(err, null);
+
+        Replay replay = null;
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < repeat; run++)
+        {
+            replay = new Replay(windowMs, intervalMs);
+            final long start = System.nanoTime();
+            ScanRecording.replay(recording, replay);
+            replay.finish();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        if (outFile != null) Files.write(Paths.get(outFile), replay.transcript, StandardCharsets.UTF_8);
+        else if (expectFile == null) for (String line : replay.transcript) out.println(line);
+
+        err.printf(Locale.ROOT, "replayed %d requests and %d scans spanning %.1f s in %.2f ms (best of %d)%n",
+                replay.requests, replay.scans, replay.lastTime / 1000.0, best / 1_000_000.0, repeat);
+        for (String line : replay.metrics.describe()) err.println(line);
+
+        if (expectFile == null) return 0;
+        final List<String> expected = Files.readAllLines(Paths.get(expectFile), StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.max(expected.size(), replay.transcript.size()); i++)
+        {
+            final String want = i < expected.size() ? expected.get(i) : "<end>";
+            final String got = i < replay.transcript.size() ? replay.transcript.get(i) : "<end>";
+            if (want.equals(got)) continue;
+            err.println("transcript differs at line " + (i + 1) + ":");
+            err.println("  expected: " + want);
+            err.println("  actual:   " + got);
+            return 1;
+        }
+        err.println("transcript matches " + expectFile);
+        return 0;
+    }
+
+    private static int usage(PrintStream err, String problem)
+    {
+        if (problem != null) err.println(problem);
+        err.println("usage: ScanReplayCli [--out file] [--expect file] [--repeat n] [--window s] [--interval s] <recording.crr>");
+        return 2;
+    }
+
+    /**
+     * Stands in for the client, the client thread, the panel and the notifier, and runs the
+     * recording through the plugin's {@link ScanPipeline}. Everything runs on the virtual
+     * scheduler's clock, which is moved to each event's time before the event is handled;
+     * the client thread is a queue that runs when the next recorded scan comes up, with that
+     * scan's rosters standing in for the clan settings.
+     */
+    private static final class Replay implements ScanRecording.Listener, ScanPipeline.Host, ScanPipeline.View
+    {
+        private final VirtualScheduler scheduler = new VirtualScheduler();
+        private final List<Runnable> clientThread = new ArrayList<>();
+        private final Map<ClanScope, ClanTracker> trackers = new EnumMap<>(ClanScope.class);
+        private final Map<ClanScope, List<IgnoreStore.Entry>> ignores = new EnumMap<>(ClanScope.class);
+        private final ScanMetrics metrics = new ScanMetrics();
+        private final ScanPipeline pipeline;
+        private final ScanCoalescer coalescer;
+        private final List<String> transcript = new ArrayList<>();
+        private int requests, scans;
+        private long lastTime;
+        // the recorded scan being replayed
+        private Set<ScanTrigger> recordedTriggers;
+        private LocalDate recordedDay;
+        private Map<ClanScope, RosterSnapshot> recordedRosters = Map.of();
+
+        Replay(long windowMs, long intervalMs)
+        {
+            for (ClanScope scope : ClanScope.values())
+            {
+                final ClanTracker tracker = new ClanTracker(scope, null, scheduler, scheduler::now, message -> send(scope, message));
+                tracker.getDigest().setTiming(windowMs, intervalMs);
+                trackers.put(scope, tracker);
+            }
+            pipeline = new ScanPipeline(new ArrayList<>(trackers.values()), scheduler, clientThread::add, metrics, this, this);
+            coalescer = new ScanCoalescer(scheduler, ScanCoalescer.DEFAULT_WINDOW_MS, pipeline::request);
+        }
+
+        private void advance(long t)
+        {
+            scheduler.advanceTo(t);
+            lastTime = t;
+        }
+
+        /**
+         * Sends the digests still waiting once the recording ended.
+         */
+        void finish()
+        {
+            scheduler.drain();
+        }
+
+        @Override
+        public void config(long t, ClanScope scope, RankConfig config)
+        {
+            advance(t);
+            trackers.get(scope).setConfig(config);
+        }
+
+        @Override
+        public void ignores(long t, ClanScope scope, List<IgnoreStore.Entry> entries)
+        {
+            advance(t);
+            final IgnoreStore store = trackers.get(scope).getIgnores();
+            final List<String> previous = new ArrayList<>();
+            for (IgnoreStore.Entry entry : ignores.getOrDefault(scope, List.of())) previous.add(entry.getName());
+            store.unignore(previous);
+            for (IgnoreStore.Entry entry : entries) store.ignore(List.of(entry.getName()), entry.getExpires(), LocalDate.MIN);
+            ignores.put(scope, entries);
+        }
+
+        @Override
+        public void request(long t, ScanTrigger trigger)
+        {
+            advance(t);
+            requests++;
+            // manual checks skip the coalescer; clicks absorbed by a scan in progress were never recorded
+            if (trigger == ScanTrigger.MANUAL) scheduler.execute(() -> pipeline.request(EnumSet.of(ScanTrigger.MANUAL)));
+            else coalescer.request(trigger);
+        }
+
+        @Override
+        public void scan(long t, Set<ScanTrigger> triggers, LocalDate today, Map<ClanScope, RosterSnapshot> rosters)
+        {
+            advance(t);
+            scans++;
+            recordedTriggers = triggers;
+            recordedDay = today;
+            recordedRosters = rosters;
+            // requested before the recording started
+            if (clientThread.isEmpty()) scheduler.execute(() -> pipeline.request(triggers));
+            scheduler.advanceTo(t);
+
+            // superseded scans' captures return right away, the current one queues its evaluation
+            final List<Runnable> captures = new ArrayList<>(clientThread);
+            clientThread.clear();
+            for (Runnable capture : captures) capture.run();
+            scheduler.advanceTo(t);
+        }
+
+        @Override
+        public boolean isLoggedIn()
+        {
+            return true;
+        }
+
+        @Override
+        public RosterSnapshot capture(ClanTracker tracker)
+        {
+            return recordedRosters.get(tracker.getScope());
+        }
+
+        @Override
+        public LocalDate today()
+        {
+            return recordedDay;
+        }
+
+        @Override
+        public void evaluating(long generation, Set<ScanTrigger> reasons, LocalDate today, Map<ClanScope, RosterSnapshot> rosters)
+        {
+            final StringBuilder line = new StringBuilder("scan ").append(scans).append(" (generation ").append(generation)
+                    .append(") ").append(today).append(' ').append(reasons.toString().toLowerCase(Locale.ROOT));
+            if (!reasons.equals(recordedTriggers)) line.append(", recorded ").append(recordedTriggers.toString().toLowerCase(Locale.ROOT));
+            transcript.add(line.toString());
+        }
+
+        @Override
+        public void published(LocalDate nextChange)
+        {
+            // the date checks it would schedule were recorded as rollover requests
+        }
+
+        @Override
+        public void superseded(long generation, long by)
+        {
+            transcript.add("superseded " + generation + " by " + by + " at " + time(scheduler.now()));
+        }
+
+        @Override
+        public void evaluated(ClanScope scope, RosterSnapshot roster, RankEngine.Result result)
+        {
+            if (result == null)
+            {
+                transcript.add("  " + scope.getDisplayName() + ": not available");
+                return;
+            }
+            describe(scope, roster, result);
+        }
+
+        @Override
+        public void failed(ClanScope scope, RuntimeException error)
+        {
+            transcript.add("  " + scope.getDisplayName() + ": failed, " + error);
+        }
+
+        // the panel, everything it would show is in the transcript already
+        @Override public void setBusy(boolean busy) { }
+
+        @Override public void setSectionVisible(ClanScope scope, boolean visible) { }
+
+        @Override public void setInfoText(ClanScope scope, String text) { }
+
+        @Override public void setRows(ClanScope scope, List<DueEntry> rows) { }
+
+        /**
+         * The plugin's notifier.
+         */
+        private boolean send(ClanScope scope, String message)
+        {
+            if (trackers.get(scope).getEngine().getConfig().isMuteNotifications())
+            {
+                transcript.add("muted at " + time(scheduler.now()) + " " + message);
+                return false;
+            }
+            transcript.add("notify at " + time(scheduler.now()) + " " + message);
+            metrics.notificationSent();
+            return true;
+        }
+
+        private static String time(long ms)
+        {
+            return String.format(Locale.ROOT, "%.3f s", ms / 1000.0);
+        }
+
+        private void describe(ClanScope scope, RosterSnapshot roster, RankEngine.Result result)
+        {
+            final String name = scope.getDisplayName();
+            final StringBuilder sb = new StringBuilder("  ").append(name).append(": ")
+                    .append(result.getStatus().name().toLowerCase(Locale.ROOT))
+                    .append(", ").append(roster.size()).append(" members");
+            if (result.getStatus() == RankEngine.Result.Status.EVALUATED)
+            {
+                sb.append(", evaluated ").append(result.getEvaluated()).append(result.isFull() ? " (full)" : "")
+                        .append(", due ").append(result.getDue().size());
+            }
+            transcript.add(sb.toString());
+            for (String problem : result.getRules().getProblems()) transcript.add("    rule problem, " + problem);
+            if (result.getStatus() != RankEngine.Result.Status.EVALUATED) return;
+
+            for (DueEntry entry : result.getDue())
+            {
+                // the same line as earlier transcripts, which listed the panel's rows
+                transcript.add("    due " + entry.getName() + ',' + entry.getDays() + ',' + entry.getTargetRankName()
+                        + ',' + entry.getCurrentRankName());
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package clanrankupnotifier;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded scheduler on a clock that only moves when told to, so {@link ScanReplayCli}
+ * and the tests can run the coalescer and the digests at a recording's timing without waiting for it.
+ * Tasks run on the thread calling {@link #advanceTo}, in order of time and then submission,
+ * with the clock set to their time. Not thread-safe.
+ */
+final class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService
+{
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private long now;
+    private long submitted;
+
+    /**
+     * @return the current time in milliseconds
+     */
+    long now() { return now; }
+
+    /**
+     * Runs every task due up to the given time, including tasks those schedule, then sets the clock to it.
+     * A task that fails stops the replay: its exception is rethrown.
+     */
+    void advanceTo(long time)
+    {
+        while (!queue.isEmpty() && queue.peek().time <= time)
+        {
+            final Task<?> task = queue.poll();
+            now = Math.max(now, task.time);
+            task.run();
+            task.rethrow();
+        }
+        now = Math.max(now, time);
+    }
+
+    /**
+     * Runs every task still scheduled, however far ahead.
+     */
+    void drain()
+    {
+        while (!queue.isEmpty()) advanceTo(queue.peek().time);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+    {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit)
+    {
+        final Task<V> task = new Task<>(callable, now + Math.max(0, unit.toMillis(delay)), submitted++);
+        queue.add(task);
+        return task;
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit)
+    {
+        throw new UnsupportedOperationException("periodic tasks are not used by the plugin");
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit)
+    {
+        throw new UnsupportedOperationException("periodic tasks are not used by the plugin");
+    }
+
+    @Override
+    public void shutdown() { }
+
+    @Override
+    public List<Runnable> shutdownNow() { return List.of(); }
+
+    @Override
+    public boolean isShutdown() { return false; }
+
+    @Override
+    public boolean isTerminated() { return false; }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) { return queue.isEmpty(); }
+
+    private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V>
+    {
+        private final long time;
+        private final long order;
+
+        Task(Callable<V> callable, long time, long order)
+        {
+            super(callable);
+            this.time = time;
+            this.order = order;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(time - now, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o)
+        {
+            final Task<?> other = (Task<?>) o;
+            final int c = Long.compare(time, other.time);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+
+        void rethrow()
+        {
+            if (isCancelled()) return;
+            try {
+                get();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            // cancelled tasks are dropped right away, so draining never runs into them
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) queue.remove(this);
+            return cancelled;
+        }
+    }
+}